@@ -0,0 +1,297 @@
+package backend;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Tags and stream facts of an MP3 file, read without decoding any audio. Text comes from the
+ * ID3v2 tag (v2.2 to v2.4) with ID3v1 as a fallback. Duration and bitrate come from the first
+ * MPEG frame header: a Xing/Info or VBRI header gives the exact frame count, otherwise the stream
+ * is assumed to be constant bitrate. Only the tag headers, the text frames and the first 64 KB of
+ * audio are read, so large cover art costs nothing.
+ *
+ * @param audioStart offset of the first MPEG frame
+ * @param audioEnd   end of the MPEG frames, before any ID3v1 tag
+ */
+public record AudioMetadata(String title, String artist, String genre, String language,
+                            long durationMillis, int bitrateKbps, int sampleRate,
+                            long audioStart, long audioEnd) {
+
+    private static final int SYNC_SEARCH_BYTES = 64 * 1024;
+    private static final int MAX_TEXT_FRAME = 64 * 1024;
+
+    private static final int[][] BITRATES = {
+            // MPEG-1 layer I, II, III
+            {0, 32, 64, 96, 128, 160, 192, 224, 256, 288, 320, 352, 384, 416, 448},
+            {0, 32, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320, 384},
+            {0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320},
+            // MPEG-2 and 2.5 layer I, then II and III
+            {0, 32, 48, 56, 64, 80, 96, 112, 128, 144, 160, 176, 192, 224, 256},
+            {0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160},
+    };
+    private static final int[][] SAMPLE_RATES = {
+            {11025, 12000, 8000},   // MPEG-2.5
+            {0, 0, 0},              // reserved
+            {22050, 24000, 16000},  // MPEG-2
+            {44100, 48000, 32000},  // MPEG-1
+    };
+
+    // ID3v1 genre numbers, as also used by "(n)" references in ID3v2 TCON frames
+    private static final String[] GENRES = {
+            "Blues", "Classic Rock", "Country", "Dance", "Disco", "Funk", "Grunge", "Hip-Hop", "Jazz", "Metal",
+            "New Age", "Oldies", "Other", "Pop", "R&B", "Rap", "Reggae", "Rock", "Techno", "Industrial",
+            "Alternative", "Ska", "Death Metal", "Pranks", "Soundtrack", "Euro-Techno", "Ambient", "Trip-Hop",
+            "Vocal", "Jazz+Funk", "Fusion", "Trance", "Classical", "Instrumental", "Acid", "House", "Game",
+            "Sound Clip", "Gospel", "Noise", "AlternRock", "Bass", "Soul", "Punk", "Space", "Meditative",
+            "Instrumental Pop", "Instrumental Rock", "Ethnic", "Gothic", "Darkwave", "Techno-Industrial",
+            "Electronic", "Pop-Folk", "Eurodance", "Dream", "Southern Rock", "Comedy", "Cult", "Gangsta",
+            "Top 40", "Christian Rap", "Pop/Funk", "Jungle", "Native American", "Cabaret", "New Wave",
+            "Psychedelic", "Rave", "Showtunes", "Trailer", "Lo-Fi", "Tribal", "Acid Punk", "Acid Jazz", "Polka",
+            "Retro", "Musical", "Rock & Roll", "Hard Rock",
+    };
+
+    /**
+     * @return the file's metadata, or null when no MPEG audio frame can be found in it
+     */
+    public static AudioMetadata read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            Tags tags = new Tags();
+
+            long audioStart = readId3v2(channel, tags);
+            long audioEnd = size;
+            if (size >= 128) {
+                ByteBuffer v1 = read(channel, size - 128, 128);
+                if (v1.remaining() == 128 && v1.get(0) == 'T' && v1.get(1) == 'A' && v1.get(2) == 'G') {
+                    audioEnd = size - 128;
+                    readId3v1(v1, tags);
+                }
+            }
+
+            return readStream(channel, audioStart, audioEnd, tags);
+        }
+    }
+
+    private static final class Tags {
+        String title;
+        String artist;
+        String albumArtist;
+        String genre;
+        String language;
+
+        // ID3v2 values win over ID3v1, which only fills the gaps
+        void fill(String key, String value) {
+            if (value == null || value.isBlank()) return;
+            value = value.trim();
+            switch (key) {
+                case "title" -> title = title == null ? value : title;
+                case "artist" -> artist = artist == null ? value : artist;
+                case "albumArtist" -> albumArtist = albumArtist == null ? value : albumArtist;
+                case "genre" -> genre = genre == null ? value : genre;
+                case "language" -> language = language == null ? value : language;
+                default -> { }
+            }
+        }
+    }
+
+    // Returns the offset just past the tag, or 0 when the file does not start with one
+    private static long readId3v2(FileChannel channel, Tags tags) throws IOException {
+        ByteBuffer header = read(channel, 0, 10);
+        if (header.remaining() < 10 || header.get(0) != 'I' || header.get(1) != 'D' || header.get(2) != '3') return 0;
+
+        int major = header.get(3);
+        int flags = header.get(5) & 0xFF;
+        long tagSize = syncsafe(header, 6);
+        long end = 10 + tagSize + ((flags & 0x10) != 0 ? 10 : 0);
+        if (major < 2 || major > 4) return end;
+
+        long pos = 10;
+        if ((flags & 0x40) != 0 && major >= 3) {
+            ByteBuffer extended = read(channel, pos, 4);
+            if (extended.remaining() < 4) return end;
+            // v2.3 counts the size field out, v2.4 counts it in
+            long extendedSize = major == 4 ? syncsafe(extended, 0) : extended.getInt(0) + 4L;
+            if (extendedSize < 0) return end;
+            pos += extendedSize;
+        }
+
+        int idLength = major == 2 ? 3 : 4;
+        int headerLength = major == 2 ? 6 : 10;
+        long tagEnd = 10 + tagSize;
+        while (pos + headerLength <= tagEnd) {
+            ByteBuffer frame = read(channel, pos, headerLength);
+            if (frame.remaining() < headerLength || frame.get(0) == 0) break;
+
+            String id = new String(frame.array(), 0, idLength, StandardCharsets.ISO_8859_1);
+            long frameSize = switch (major) {
+                case 2 -> (frame.get(3) & 0xFF) << 16 | (frame.get(4) & 0xFF) << 8 | frame.get(5) & 0xFF;
+                case 3 -> frame.getInt(4) & 0xFFFFFFFFL;
+                default -> syncsafe(frame, 4);
+            };
+            long body = pos + headerLength;
+            if (frameSize <= 0 || body + frameSize > tagEnd) break;
+
+            String key = frameKey(id);
+            if (key != null && frameSize <= MAX_TEXT_FRAME) {
+                tags.fill(key, decodeText(read(channel, body, (int) frameSize)));
+            }
+            pos = body + frameSize;
+        }
+        return end;
+    }
+
+    private static String frameKey(String id) {
+        return switch (id) {
+            case "TIT2", "TT2" -> "title";
+            case "TPE1", "TP1" -> "artist";
+            case "TPE2", "TP2" -> "albumArtist";
+            case "TCON", "TCO" -> "genre";
+            case "TLAN", "TLA" -> "language";
+            default -> null;
+        };
+    }
+
+    // Text frame body: one encoding byte, then the text; only the first of several values is kept
+    private static String decodeText(ByteBuffer body) {
+        if (body.remaining() < 2) return null;
+        int encoding = body.get(0);
+        Charset charset = switch (encoding) {
+            case 1 -> StandardCharsets.UTF_16;
+            case 2 -> StandardCharsets.UTF_16BE;
+            case 3 -> StandardCharsets.UTF_8;
+            default -> StandardCharsets.ISO_8859_1;
+        };
+        String text = new String(body.array(), 1, body.remaining() - 1, charset);
+        int nul = text.indexOf('\0');
+        return nul >= 0 ? text.substring(0, nul) : text;
+    }
+
+    private static void readId3v1(ByteBuffer tag, Tags tags) {
+        tags.fill("title", v1Field(tag, 3, 30));
+        tags.fill("artist", v1Field(tag, 33, 30));
+        int genre = tag.get(127) & 0xFF;
+        if (genre < GENRES.length) tags.fill("genre", GENRES[genre]);
+    }
+
+    private static String v1Field(ByteBuffer tag, int offset, int length) {
+        String text = new String(tag.array(), offset, length, StandardCharsets.ISO_8859_1);
+        int nul = text.indexOf('\0');
+        return (nul >= 0 ? text.substring(0, nul) : text).trim();
+    }
+
+    private static AudioMetadata readStream(FileChannel channel, long from, long audioEnd, Tags tags) throws IOException {
+        ByteBuffer head = read(channel, from, (int) Math.min(SYNC_SEARCH_BYTES, Math.max(0, audioEnd - from)));
+        int limit = head.remaining();
+
+        for (int i = 0; i + 4 <= limit; i++) {
+            if ((head.get(i) & 0xFF) != 0xFF || (head.get(i + 1) & 0xE0) != 0xE0) continue;
+
+            Frame frame = Frame.parse(head.getInt(i));
+            if (frame == null) continue;
+            // A real frame is followed by another one; a stray sync pattern usually is not
+            int next = i + frame.length;
+            if (next + 4 <= limit && Frame.parse(head.getInt(next)) == null) continue;
+
+            long audioStart = from + i;
+            long audioBytes = audioEnd - audioStart;
+            long frames = vbrFrameCount(head, i, frame);
+
+            long durationMillis;
+            int bitrate;
+            if (frames > 0) {
+                durationMillis = frames * frame.samples * 1000 / frame.sampleRate;
+                bitrate = durationMillis > 0 ? (int) (audioBytes * 8 / durationMillis) : frame.bitrate;
+            } else {
+                bitrate = frame.bitrate;
+                durationMillis = audioBytes * 8 / bitrate;
+            }
+
+            String genre = genreName(tags.genre);
+            return new AudioMetadata(tags.title, tags.artist != null ? tags.artist : tags.albumArtist,
+                    genre, tags.language, durationMillis, bitrate, frame.sampleRate, audioStart, audioEnd);
+        }
+        return null;
+    }
+
+    // Frame count from a Xing/Info or VBRI header inside the first frame; 0 when there is none
+    private static long vbrFrameCount(ByteBuffer head, int frameStart, Frame frame) {
+        int xing = frameStart + 4 + frame.sideInfoLength;
+        if (xing + 12 <= head.limit()) {
+            String id = new String(head.array(), xing, 4, StandardCharsets.ISO_8859_1);
+            if ((id.equals("Xing") || id.equals("Info")) && (head.getInt(xing + 4) & 1) != 0) {
+                return head.getInt(xing + 8) & 0xFFFFFFFFL;
+            }
+        }
+        int vbri = frameStart + 36;
+        if (vbri + 18 <= head.limit() && new String(head.array(), vbri, 4, StandardCharsets.ISO_8859_1).equals("VBRI")) {
+            return head.getInt(vbri + 14) & 0xFFFFFFFFL;
+        }
+        return 0;
+    }
+
+    // "Rock", "(17)", "17" or "(17)Rock" to a name
+    private static String genreName(String raw) {
+        if (raw == null) return null;
+        String value = raw.trim();
+        if (value.startsWith("(")) {
+            int close = value.indexOf(')');
+            if (close > 0) {
+                String rest = value.substring(close + 1).trim();
+                if (!rest.isEmpty()) return rest;
+                value = value.substring(1, close);
+            }
+        }
+        if (!value.isEmpty() && value.chars().allMatch(Character::isDigit) && value.length() <= 3) {
+            int number = Integer.parseInt(value);
+            return number < GENRES.length ? GENRES[number] : null;
+        }
+        return value.isEmpty() ? null : value;
+    }
+
+    private record Frame(int bitrate, int sampleRate, int samples, int length, int sideInfoLength) {
+
+        static Frame parse(int header) {
+            if ((header >>> 21) != 0x7FF) return null;
+            int version = header >>> 19 & 3;   // 0 = 2.5, 2 = 2, 3 = 1
+            int layer = header >>> 17 & 3;     // 1 = III, 2 = II, 3 = I
+            int bitrateIndex = header >>> 12 & 15;
+            int rateIndex = header >>> 10 & 3;
+            if (version == 1 || layer == 0 || bitrateIndex == 0 || bitrateIndex == 15 || rateIndex == 3) return null;
+
+            boolean mpeg1 = version == 3;
+            int layerNumber = 4 - layer;
+            int table = mpeg1 ? layerNumber - 1 : layerNumber == 1 ? 3 : 4;
+            int bitrate = BITRATES[table][bitrateIndex];
+            int sampleRate = SAMPLE_RATES[version][rateIndex];
+            int padding = header >>> 9 & 1;
+            boolean mono = (header >>> 6 & 3) == 3;
+
+            int samples = layerNumber == 1 ? 384 : layerNumber == 3 && !mpeg1 ? 576 : 1152;
+            int length = layerNumber == 1
+                    ? (12 * bitrate * 1000 / sampleRate + padding) * 4
+                    : samples / 8 * bitrate * 1000 / sampleRate + padding;
+            int sideInfo = mpeg1 ? (mono ? 17 : 32) : (mono ? 9 : 17);
+            return new Frame(bitrate, sampleRate, samples, length, sideInfo);
+        }
+    }
+
+    private static long syncsafe(ByteBuffer buffer, int offset) {
+        return (buffer.get(offset) & 0x7FL) << 21 | (buffer.get(offset + 1) & 0x7FL) << 14
+                | (buffer.get(offset + 2) & 0x7FL) << 7 | buffer.get(offset + 3) & 0x7FL;
+    }
+
+    // Up to length bytes at position; fewer at the end of the file
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Math.max(0, length));
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position + buffer.position());
+            if (n < 0) break;
+        }
+        return buffer.flip();
+    }
+}
@@ -0,0 +1,291 @@
+package backend;
+
+import database.DbAssist;
+import database.PlayHistory;
+import database.PlayHistory.Kind;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntPredicate;
+
+/**
+ * Songs that get played together. The play history is cut into listening sessions at gaps of
+ * more than {@link #SESSION_GAP_MILLIS}, and every song started in a session counts once with
+ * each of the {@link #WINDOW} songs started before it; a song skipped within
+ * {@link #QUICK_SKIP_MILLIS} is taken back out. The counts live in a sparse symmetric matrix
+ * with one open-addressing row of int pairs per song id, so nothing is boxed. Similarity is the
+ * co-play count over the geometric mean of both songs' plays, and a top-K query scans one row,
+ * which takes microseconds. Each batch {@link PlayHistory} writes is folded in as it is
+ * committed; deleting songs makes the next query rebuild from the history.
+ */
+public class CoPlayIndex {
+
+    public static final CoPlayIndex CATALOG = new CoPlayIndex();
+
+    public record Similar(int songId, double score) {}
+
+    private static final long SESSION_GAP_MILLIS = 30 * 60 * 1000;
+    private static final long QUICK_SKIP_MILLIS = 30_000;
+    private static final int WINDOW = 5;
+
+    // Serializes loading and refreshing, which own sessions and lastEventId
+    private final Object loadLock = new Object();
+    private final AtomicBoolean listening = new AtomicBoolean();
+    private volatile boolean stale;
+    private Sessions sessions;
+    private long lastEventId;
+    private Matrix matrix;
+
+    private CoPlayIndex() {
+    }
+
+    // Build from the whole play history and follow later events; safe to call again to rebuild
+    public void load() {
+        if (listening.compareAndSet(false, true)) {
+            PlayHistory.addFlushListener(this::refresh);
+            DbAssist.addChangeListener(change -> {
+                if (change.reloadAll() || !change.deleted().isEmpty()) stale = true;
+            });
+        }
+
+        synchronized (loadLock) {
+            stale = false;
+            long start = System.nanoTime();
+            Matrix fresh = new Matrix();
+            Sessions freshSessions = new Sessions();
+            long[] last = {0};
+            boolean complete = PlayHistory.scanEvents(0, (eventId, songId, kind, atMillis, positionMillis) -> {
+                freshSessions.apply(fresh, songId, kind, atMillis, positionMillis);
+                last[0] = eventId;
+            });
+            if (!complete) return;
+
+            synchronized (this) {
+                matrix = fresh;
+            }
+            sessions = freshSessions;
+            lastEventId = last[0];
+            System.out.println("🤝 Co-play index: " + fresh.songs + " songs, " + fresh.pairs + " pairs in "
+                    + (System.nanoTime() - start) / 1_000_000 + " ms");
+        }
+    }
+
+    // Load on first use, or rebuild after songs were deleted; reads the database
+    public void ensureLoaded() {
+        synchronized (loadLock) {
+            if (stale || !isReady()) load();
+        }
+    }
+
+    public synchronized boolean isReady() {
+        return matrix != null;
+    }
+
+    // Fold in events recorded since the last load or refresh
+    public void refresh() {
+        synchronized (loadLock) {
+            if (sessions == null) return;
+
+            List<long[]> events = new ArrayList<>();
+            PlayHistory.scanEvents(lastEventId, (eventId, songId, kind, atMillis, positionMillis) ->
+                    events.add(new long[]{eventId, songId, kind.ordinal(), atMillis, positionMillis}));
+            if (events.isEmpty()) return;
+
+            Kind[] kinds = Kind.values();
+            synchronized (this) {
+                for (long[] event : events) {
+                    sessions.apply(matrix, (int) event[1], kinds[(int) event[2]], event[3], event[4]);
+                }
+            }
+            lastEventId = events.get(events.size() - 1)[0];
+        }
+    }
+
+    /**
+     * Up to k songs most often played together with songId, best first, leaving out those
+     * exclude accepts. Empty when the song has no co-plays or nothing is loaded.
+     */
+    public synchronized List<Similar> similar(int songId, int k, IntPredicate exclude) {
+        if (matrix == null || k <= 0) return List.of();
+        Row row = matrix.row(songId, false);
+        if (row == null) return List.of();
+
+        // Min-heap of the best k so far, by score
+        int[] ids = new int[k];
+        double[] scores = new double[k];
+        int size = 0;
+        double seedPlays = Math.max(1, matrix.plays(songId));
+        for (int slot = 0; slot < row.keys.length; slot++) {
+            int other = row.keys[slot];
+            int count = row.counts[slot];
+            if (other == 0 || count <= 0 || exclude.test(other)) continue;
+
+            double score = count / Math.sqrt(seedPlays * Math.max(1, matrix.plays(other)));
+            if (size < k) {
+                ids[size] = other;
+                scores[size] = score;
+                siftUp(ids, scores, size++);
+            } else if (score > scores[0]) {
+                ids[0] = other;
+                scores[0] = score;
+                siftDown(ids, scores, size);
+            }
+        }
+
+        Similar[] best = new Similar[size];
+        for (int i = 0; i < size; i++) best[i] = new Similar(ids[i], scores[i]);
+        Arrays.sort(best, (a, b) -> Double.compare(b.score(), a.score()));
+        return List.of(best);
+    }
+
+    private static void siftUp(int[] ids, double[] scores, int i) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (scores[parent] <= scores[i]) return;
+            swap(ids, scores, i, parent);
+            i = parent;
+        }
+    }
+
+    private static void siftDown(int[] ids, double[] scores, int size) {
+        int i = 0;
+        while (true) {
+            int smallest = i;
+            int left = 2 * i + 1;
+            if (left < size && scores[left] < scores[smallest]) smallest = left;
+            if (left + 1 < size && scores[left + 1] < scores[smallest]) smallest = left + 1;
+            if (smallest == i) return;
+            swap(ids, scores, i, smallest);
+            i = smallest;
+        }
+    }
+
+    private static void swap(int[] ids, double[] scores, int a, int b) {
+        int id = ids[a];
+        ids[a] = ids[b];
+        ids[b] = id;
+        double score = scores[a];
+        scores[a] = scores[b];
+        scores[b] = score;
+    }
+
+    /** The songs started in the current session that a new start is paired with. */
+    private static final class Sessions {
+        // The last WINDOW starts, plus the newest so that a quick skip undoes exactly its own pairs
+        private final int[] window = new int[WINDOW + 1];
+        private int size;
+        private long lastStart;
+
+        void apply(Matrix matrix, int songId, Kind kind, long atMillis, long positionMillis) {
+            if (kind == Kind.START) {
+                if (atMillis - lastStart > SESSION_GAP_MILLIS) size = 0;
+                lastStart = atMillis;
+                if (size == window.length) System.arraycopy(window, 1, window, 0, --size);
+                pair(matrix, songId, 1);
+                window[size++] = songId;
+            } else if (kind == Kind.SKIP && positionMillis < QUICK_SKIP_MILLIS && size > 0 && window[size - 1] == songId) {
+                size--;
+                pair(matrix, songId, -1);
+            }
+        }
+
+        private void pair(Matrix matrix, int songId, int delta) {
+            for (int i = 0; i < size; i++) {
+                if (window[i] != songId) matrix.addPair(window[i], songId, delta);
+            }
+            matrix.addPlay(songId, delta);
+        }
+    }
+
+    /** Rows indexed by song id. */
+    private static final class Matrix {
+        private Row[] rows = new Row[1024];
+        private int[] plays = new int[1024];
+        private int songs;
+        private long pairs;
+
+        void addPair(int a, int b, int delta) {
+            if (row(a, true).add(b, delta)) pairs++;
+            row(b, true).add(a, delta);
+        }
+
+        void addPlay(int songId, int delta) {
+            grow(songId);
+            plays[songId] = Math.max(0, plays[songId] + delta);
+        }
+
+        int plays(int songId) {
+            return songId < plays.length ? plays[songId] : 0;
+        }
+
+        Row row(int songId, boolean create) {
+            if (songId <= 0) return null;
+            if (songId >= rows.length) {
+                if (!create) return null;
+                grow(songId);
+            }
+            if (rows[songId] == null && create) {
+                rows[songId] = new Row();
+                songs++;
+            }
+            return rows[songId];
+        }
+
+        private void grow(int songId) {
+            if (songId < rows.length) return;
+            int capacity = Math.max(rows.length * 2, songId + 1);
+            rows = Arrays.copyOf(rows, capacity);
+            plays = Arrays.copyOf(plays, capacity);
+        }
+    }
+
+    /** Open-addressing map from song id to count; 0 marks an empty slot, since ids start at 1. */
+    private static final class Row {
+        private int[] keys = new int[8];
+        private int[] counts = new int[8];
+        private int size;
+
+        // true when other was not in the row before
+        boolean add(int other, int delta) {
+            int slot = find(keys, other);
+            if (keys[slot] == other) {
+                counts[slot] = Math.max(0, counts[slot] + delta);
+                return false;
+            }
+            if (delta <= 0) return false;
+
+            if (4 * (size + 1) > 3 * keys.length) {
+                resize();
+                slot = find(keys, other);
+            }
+            keys[slot] = other;
+            counts[slot] = delta;
+            size++;
+            return true;
+        }
+
+        private void resize() {
+            int[] oldKeys = keys;
+            int[] oldCounts = counts;
+            keys = new int[oldKeys.length * 2];
+            counts = new int[oldKeys.length * 2];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] == 0) continue;
+                int slot = find(keys, oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                counts[slot] = oldCounts[i];
+            }
+        }
+
+        // Slot holding key, or the empty slot where it would go
+        private static int find(int[] keys, int key) {
+            int mask = keys.length - 1;
+            int hash = key * 0x9E3779B9;
+            int slot = (hash ^ hash >>> 16) & mask;
+            while (keys[slot] != 0 && keys[slot] != key) slot = (slot + 1) & mask;
+            return slot;
+        }
+    }
+}
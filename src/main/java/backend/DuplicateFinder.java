@@ -0,0 +1,149 @@
+package backend;
+
+import database.DbFinder;
+import database.LibraryImporter;
+import database.LibraryImporter.FileHash;
+import database.LibraryImporter.FileStamp;
+import database.Song;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Finds songs whose files hold the same audio under different tags or names. Every indexed file
+ * gets an XXH64 of the bytes between its ID3 tags, read through memory-mapped regions of up to
+ * {@link #MAP_REGION} bytes on {@link #HASHERS} threads, and the hash is kept in
+ * {@code library_files}. A rescan that sees a file change clears its hash, so a later run only
+ * reads new and changed files. Re-encodes of the same recording have different bytes and are
+ * not matched.
+ */
+public class DuplicateFinder {
+
+    private static final int BATCH_SIZE = 500;
+    private static final int HASHERS = Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
+    private static final long MAP_REGION = 256L << 20;
+
+    public interface ProgressListener {
+        void onProgress(int hashed, int toHash);
+    }
+
+    public record Result(int hashed, int failed, long bytes, long millis) {
+        @Override
+        public String toString() {
+            return "%d files hashed, %d failed, %.1f MB (%.0f MB/s, %d ms)".formatted(hashed, failed, bytes / 1e6,
+                    millis > 0 ? bytes / 1e3 / millis : 0, millis);
+        }
+    }
+
+    private record Hashed(FileHash hash, long bytes) {}
+
+    private DuplicateFinder() {
+    }
+
+    // Bring the index up to date, then hash every file not hashed yet; call off the JavaFX thread
+    public static Result hashLibrary(Path root, ProgressListener listener) {
+        LibraryScanner.scan(root, null);
+
+        long start = System.nanoTime();
+        Map<String, FileStamp> pending = LibraryImporter.loadUnhashed(LibraryScanner.key(root) + "/");
+        if (pending.isEmpty()) return new Result(0, 0, 0, 0);
+
+        ExecutorService hashers = Executors.newFixedThreadPool(HASHERS, runnable -> {
+            Thread thread = new Thread(runnable, "audio-hash");
+            thread.setDaemon(true);
+            return thread;
+        });
+        CompletionService<Hashed> completion = new ExecutorCompletionService<>(hashers);
+        pending.forEach((path, stamp) -> completion.submit(() -> hash(path, stamp)));
+
+        int hashed = 0;
+        int failed = 0;
+        long bytes = 0;
+        List<FileHash> batch = new ArrayList<>(BATCH_SIZE);
+        try {
+            for (int done = 1; done <= pending.size(); done++) {
+                Hashed result = completion.take().get();
+                if (result == null) {
+                    failed++;
+                } else {
+                    batch.add(result.hash());
+                    bytes += result.bytes();
+                }
+
+                if (batch.size() == BATCH_SIZE || (done == pending.size() && !batch.isEmpty())) {
+                    hashed += LibraryImporter.storeHashes(batch);
+                    batch.clear();
+                }
+                if (listener != null && (done % 50 == 0 || done == pending.size())) {
+                    listener.onProgress(done, pending.size());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("⚠️ Audio hashing interrupted");
+        } catch (ExecutionException e) {
+            System.err.println("❌ Audio hashing failed: " + e.getCause().getMessage());
+        } finally {
+            hashers.shutdownNow();
+        }
+
+        Result result = new Result(hashed, failed, bytes, (System.nanoTime() - start) / 1_000_000);
+        System.out.println("🧬 Audio hashes: " + result);
+        return result;
+    }
+
+    // Groups of songs with identical audio, as of the last hashLibrary
+    public static List<List<Song>> findDuplicates() {
+        List<List<Integer>> groups = DbFinder.findDuplicateSongIds();
+        Map<Integer, Song> byId = new HashMap<>();
+        for (Song song : DbFinder.searchSongs(groups.stream().flatMap(List::stream).toList())) {
+            byId.put(song.id(), song);
+        }
+
+        List<List<Song>> duplicates = new ArrayList<>();
+        for (List<Integer> group : groups) {
+            List<Song> songs = group.stream().map(byId::get).filter(Objects::nonNull).toList();
+            if (songs.size() > 1) duplicates.add(songs);
+        }
+        return duplicates;
+    }
+
+    // XXH64 of everything between the ID3v2 and ID3v1 tags
+    static long hashAudio(Path file) throws IOException {
+        AudioMetadata meta = AudioMetadata.read(file);
+        if (meta == null) throw new IOException("no MPEG audio found");
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            XxHash64 hash = new XxHash64();
+            for (long position = meta.audioStart(); position < meta.audioEnd(); position += MAP_REGION) {
+                long length = Math.min(MAP_REGION, meta.audioEnd() - position);
+                hash.update(channel.map(FileChannel.MapMode.READ_ONLY, position, length));
+            }
+            return hash.digest();
+        }
+    }
+
+    // null when the file cannot be read
+    private static Hashed hash(String path, FileStamp stamp) {
+        try {
+            long audioHash = hashAudio(Paths.get(path));
+            return new Hashed(new FileHash(path, stamp, audioHash), stamp.size());
+        } catch (IOException e) {
+            System.err.println("❌ Failed to hash " + path + ": " + e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,558 @@
+package backend;
+
+import database.CatalogChange;
+import database.DbAssist;
+import database.DbFinder;
+import database.PageKey;
+import database.Song;
+import database.SongPage;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * Typo-tolerant lookup over song titles and artist names. Every word is split into padded
+ * trigrams (" cl", "clo", ... "er ") and each trigram keeps a sorted int[] of the titles that
+ * contain it. A query only looks at titles sharing enough trigrams to be within the allowed
+ * number of edits, then ranks them by the edit distance of the query to the closest part of
+ * the title. Writes made through {@link DbAssist} are applied as they are committed.
+ */
+public class FuzzyIndex {
+
+    public static final FuzzyIndex CATALOG = new FuzzyIndex();
+
+    public record Match(int songId, int distance) {}
+
+    private static final int LOAD_PAGE_SIZE = 5000;
+    private static final int MIN_QUERY_LENGTH = 4;
+    private static final int MAX_QUERY_LENGTH = 64;
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicBoolean listening = new AtomicBoolean();
+    private final AtomicBoolean rebuildQueued = new AtomicBoolean();
+    private final List<CatalogChange> changesDuringBuild = new ArrayList<>();
+    private boolean building;
+    private Data data;
+
+    // Per-thread shared-trigram counters, one byte per doc to keep the array cache friendly
+    private static final ThreadLocal<byte[][]> SCRATCH = ThreadLocal.withInitial(() -> new byte[][]{new byte[0]});
+
+    private FuzzyIndex() {
+    }
+
+    // Build from the songs table and follow later writes; safe to call again to rebuild
+    public void load() {
+        if (listening.compareAndSet(false, true)) {
+            DbAssist.addChangeListener(this::apply);
+        }
+        rebuild();
+    }
+
+    public boolean isReady() {
+        lock.readLock().lock();
+        try {
+            return data != null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return data == null ? 0 : data.docCount - data.deletedCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Songs whose title or artist is within a few edits of the query, closest first.
+     * Queries shorter than four letters return nothing.
+     */
+    public List<Match> search(String query, int limit) {
+        String q = normalize(query);
+        if (q.length() > MAX_QUERY_LENGTH) q = q.substring(0, MAX_QUERY_LENGTH).trim();
+        if (q.length() < MIN_QUERY_LENGTH || limit <= 0) return List.of();
+
+        int maxEdits = q.length() <= 5 ? 1 : 2;
+        long[] grams = grams(q);
+        // Each edit can break up to three trigrams; also insisting on half of them keeps
+        // common trigrams from flooding the candidates at the cost of some very mangled queries
+        int required = Math.max(grams.length - 3 * maxEdits, (grams.length + 1) / 2);
+        int[] row = new int[q.length() + 1];
+        int[] previous = new int[q.length() + 1];
+        TopMatches top = new TopMatches(limit);
+
+        lock.readLock().lock();
+        try {
+            if (data == null) return List.of();
+
+            // Candidates come most-shared-trigrams first; stop once nothing left can do better
+            Candidates titles = candidates(data.titleGrams, grams, required, data.docCount);
+            for (int i = 0; i < titles.docs.length; i++) {
+                if (top.isFull() && top.worstDistance() <= lowerBound(grams.length, titles.shared[i])) break;
+
+                int doc = titles.docs[i];
+                if (data.deleted.get(doc)) continue;
+                int distance = substringDistance(q, data.titles[doc], maxEdits, row, previous);
+                if (distance <= maxEdits) {
+                    top.offer(data.songIds[doc], distance, false, Math.abs(data.titles[doc].length() - q.length()));
+                }
+            }
+
+            Candidates artists = candidates(data.artistGrams, grams, required, data.artistNames.size());
+            for (int i = 0; i < artists.docs.length; i++) {
+                if (top.isFull() && top.worstDistance() < lowerBound(grams.length, artists.shared[i])) break;
+
+                int artist = artists.docs[i];
+                int distance = substringDistance(q, data.artistNames.get(artist), maxEdits, row, previous);
+                // At equal distance title matches already rank ahead of artist ones
+                if (distance > maxEdits || top.isFull() && top.worstDistance() <= distance) continue;
+
+                IntList docs = data.artistDocs.get(artist);
+                for (int j = 0, offered = 0; j < docs.size && offered < limit; j++) {
+                    int doc = docs.data[j];
+                    if (data.deleted.get(doc)) continue;
+                    top.offer(data.songIds[doc], distance, true, 0);
+                    offered++;
+                }
+            }
+            return top.toMatches();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private synchronized void rebuild() {
+        lock.writeLock().lock();
+        try {
+            building = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        long start = System.nanoTime();
+        Data fresh = new Data();
+        PageKey after = null;
+        do {
+            SongPage page = DbFinder.getSongsPage(after, LOAD_PAGE_SIZE);
+            for (Song song : page.songs()) {
+                fresh.add(song.id(), song.title(), song.artist());
+            }
+            after = page.next();
+        } while (after != null);
+        fresh.trim();
+
+        List<CatalogChange> missed;
+        lock.writeLock().lock();
+        try {
+            data = fresh;
+            building = false;
+            missed = new ArrayList<>(changesDuringBuild);
+            changesDuringBuild.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        System.out.println("🔤 Fuzzy index: %d titles, %d title trigrams, %d artists (%.0f ms)"
+                .formatted(fresh.docCount, fresh.titleGrams.size, fresh.artistNames.size(),
+                        (System.nanoTime() - start) / 1_000_000.0));
+        missed.forEach(this::apply);
+    }
+
+    /**
+     * Rebuild on a background thread, so the writer firing the change is not held up. Until it is
+     * done, searches see the old index and later changes wait to be applied to the new one; any
+     * number of requests made meanwhile share one more rebuild.
+     */
+    private void rebuildLater() {
+        lock.writeLock().lock();
+        try {
+            building = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (!rebuildQueued.compareAndSet(false, true)) return;
+
+        Thread thread = new Thread(() -> {
+            rebuildQueued.set(false);
+            rebuild();
+        }, "fuzzy-index");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void apply(CatalogChange change) {
+        if (change.reloadAll()) {
+            rebuildLater();
+            return;
+        }
+
+        List<Song> songs = change.upserted().isEmpty() ? List.of() : DbFinder.searchSongs(change.upserted());
+
+        lock.writeLock().lock();
+        try {
+            if (building) {
+                changesDuringBuild.add(change);
+                return;
+            }
+            if (data == null) return;
+
+            data.remove(change.deleted());
+            data.remove(change.upserted());
+            for (Song song : songs) {
+                data.add(song.id(), song.title(), song.artist());
+            }
+            if (data.deletedCount > 1024 && data.deletedCount * 4 > data.docCount) {
+                data = data.compact();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Fewest edits a text sharing only `shared` of the query's trigrams can be away from it
+    private static int lowerBound(int grams, int shared) {
+        return (grams - shared + 2) / 3;
+    }
+
+    private record Candidates(int[] docs, int[] shared) {}
+
+    // Docs sharing at least `required` of the grams, most shared first
+    private static Candidates candidates(GramTable table, long[] grams, int required, int universe) {
+        IntList[] lists = new IntList[grams.length];
+        int present = 0;
+        for (long gram : grams) {
+            IntList list = table.get(gram);
+            if (list != null) lists[present++] = list;
+        }
+        if (present < required) return new Candidates(new int[0], new int[0]);
+
+        lists = Arrays.copyOf(lists, present);
+        Arrays.sort(lists, Comparator.comparingInt(list -> list.size));
+
+        // A doc sharing `required` grams must appear in one of the shortest present - required + 1 lists
+        int seedLists = present - required + 1;
+
+        byte[][] scratch = SCRATCH.get();
+        if (scratch[0].length < universe) scratch[0] = new byte[Math.max(universe, scratch[0].length * 2)];
+        byte[] counts = scratch[0];
+        IntList touched = new IntList(64);
+
+        for (int l = 0; l < seedLists; l++) {
+            IntList list = lists[l];
+            for (int i = 0; i < list.size; i++) {
+                int doc = list.data[i];
+                if (counts[doc]++ == 0) touched.add(doc);
+            }
+        }
+        // The long lists are only probed for docs that are already candidates, walking each
+        // list once in doc order with galloping steps
+        if (seedLists < present) Arrays.sort(touched.data, 0, touched.size);
+        for (int l = seedLists; l < present; l++) {
+            IntList list = lists[l];
+            int from = 0;
+            for (int i = 0; i < touched.size && from < list.size; i++) {
+                int doc = touched.data[i];
+                from = gallop(list.data, from, list.size, doc);
+                if (from < list.size && list.data[from] == doc) counts[doc]++;
+            }
+        }
+
+        // Counting sort by shared trigrams, descending; ties keep doc order
+        int[] perCount = new int[present + 2];
+        int kept = 0;
+        for (int i = 0; i < touched.size; i++) {
+            int count = counts[touched.data[i]];
+            if (count >= required) {
+                perCount[present - count + 1]++;
+                kept++;
+            }
+        }
+        for (int c = 1; c < perCount.length; c++) perCount[c] += perCount[c - 1];
+
+        int[] docs = new int[kept];
+        int[] shared = new int[kept];
+        for (int i = 0; i < touched.size; i++) {
+            int doc = touched.data[i];
+            int count = counts[doc];
+            counts[doc] = 0;
+            if (count < required) continue;
+            int slot = perCount[present - count]++;
+            docs[slot] = doc;
+            shared[slot] = count;
+        }
+        return new Candidates(docs, shared);
+    }
+
+    // First index at or after `from` whose value is >= target
+    private static int gallop(int[] sorted, int from, int to, int target) {
+        int step = 1;
+        int low = from;
+        int high = from;
+        while (high < to && sorted[high] < target) {
+            low = high + 1;
+            high += step;
+            step <<= 1;
+        }
+        int index = Arrays.binarySearch(sorted, low, Math.min(high + 1, to), target);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    // Fewest edits turning the pattern into some substring of the text; anything above max is max + 1
+    private static int substringDistance(String pattern, String text, int max, int[] row, int[] previous) {
+        int m = pattern.length();
+        for (int i = 0; i <= m; i++) previous[i] = i;
+
+        int best = previous[m];
+        for (int j = 1; j <= text.length(); j++) {
+            char c = text.charAt(j - 1);
+            row[0] = 0;
+            for (int i = 1; i <= m; i++) {
+                int cost = pattern.charAt(i - 1) == c ? 0 : 1;
+                row[i] = Math.min(previous[i - 1] + cost, Math.min(previous[i], row[i - 1]) + 1);
+            }
+            best = Math.min(best, row[m]);
+            if (best == 0) return 0;
+
+            int[] swap = previous;
+            previous = row;
+            row = swap;
+        }
+        return Math.min(best, max + 1);
+    }
+
+    // Lower case, no diacritics, words separated by single spaces
+    static String normalize(String text) {
+        if (text == null) return "";
+        String folded = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        return SEPARATORS.matcher(folded.toLowerCase()).replaceAll(" ").trim();
+    }
+
+    // Distinct trigrams of every word padded with one space on each side
+    private static long[] grams(String normalized) {
+        long[] grams = new long[normalized.length() + 2];
+        int count = 0;
+        for (String word : normalized.split(" ")) {
+            if (word.isEmpty()) continue;
+            String padded = " " + word + " ";
+            for (int i = 0; i + 3 <= padded.length(); i++) {
+                if (count == grams.length) grams = Arrays.copyOf(grams, count * 2);
+                grams[count++] = ((long) padded.charAt(i) << 32) | ((long) padded.charAt(i + 1) << 16) | padded.charAt(i + 2);
+            }
+        }
+        long[] sorted = Arrays.copyOf(grams, count);
+        Arrays.sort(sorted);
+        return Arrays.stream(sorted).distinct().toArray();
+    }
+
+    private static final class Data {
+        int docCount;
+        int[] songIds = new int[1024];
+        String[] titles = new String[1024];
+        int[] artistOf = new int[1024];
+        final BitSet deleted = new BitSet();
+        int deletedCount;
+        final GramTable titleGrams = new GramTable();
+
+        final List<String> artistNames = new ArrayList<>();
+        final Map<String, Integer> artistIds = new HashMap<>();
+        final List<IntList> artistDocs = new ArrayList<>();
+        final GramTable artistGrams = new GramTable();
+
+        void add(int songId, String title, String artist) {
+            addNormalized(songId, normalize(title), artistIndex(artist == null ? "" : artist));
+        }
+
+        void addNormalized(int songId, String title, int artist) {
+            if (docCount == songIds.length) {
+                int capacity = docCount * 2;
+                songIds = Arrays.copyOf(songIds, capacity);
+                titles = Arrays.copyOf(titles, capacity);
+                artistOf = Arrays.copyOf(artistOf, capacity);
+            }
+            int doc = docCount++;
+            songIds[doc] = songId;
+            titles[doc] = title;
+            artistOf[doc] = artist;
+            artistDocs.get(artist).add(doc);
+            for (long gram : grams(title)) titleGrams.add(gram, doc);
+        }
+
+        int artistIndex(String name) {
+            Integer known = artistIds.get(name);
+            if (known != null) return known;
+
+            int index = artistNames.size();
+            String normalized = normalize(name);
+            artistIds.put(name, index);
+            artistNames.add(normalized);
+            artistDocs.add(new IntList(8));
+            for (long gram : grams(normalized)) artistGrams.add(gram, index);
+            return index;
+        }
+
+        void remove(Collection<Integer> songIdsToRemove) {
+            if (songIdsToRemove.isEmpty()) return;
+            for (int doc = 0; doc < docCount; doc++) {
+                if (!deleted.get(doc) && songIdsToRemove.contains(songIds[doc])) {
+                    deleted.set(doc);
+                    deletedCount++;
+                }
+            }
+        }
+
+        // Same contents without the tombstones; artist entries are kept as they are few
+        Data compact() {
+            Data fresh = new Data();
+            for (int i = 0; i < artistNames.size(); i++) {
+                fresh.artistNames.add(artistNames.get(i));
+                fresh.artistDocs.add(new IntList(8));
+                for (long gram : grams(artistNames.get(i))) fresh.artistGrams.add(gram, i);
+            }
+            fresh.artistIds.putAll(artistIds);
+            for (int doc = 0; doc < docCount; doc++) {
+                if (!deleted.get(doc)) fresh.addNormalized(songIds[doc], titles[doc], artistOf[doc]);
+            }
+            fresh.trim();
+            return fresh;
+        }
+
+        void trim() {
+            titleGrams.trim();
+            artistGrams.trim();
+        }
+    }
+
+    // Open-addressing map from an encoded trigram to its posting list
+    private static final class GramTable {
+        long[] keys = new long[1024];
+        IntList[] lists = new IntList[1024];
+        int size;
+
+        IntList get(long gram) {
+            int mask = keys.length - 1;
+            for (int slot = hash(gram) & mask; keys[slot] != 0; slot = (slot + 1) & mask) {
+                if (keys[slot] == gram) return lists[slot];
+            }
+            return null;
+        }
+
+        // Docs arrive in ascending order, so each list stays sorted and free of duplicates
+        void add(long gram, int doc) {
+            int mask = keys.length - 1;
+            int slot = hash(gram) & mask;
+            while (keys[slot] != 0 && keys[slot] != gram) slot = (slot + 1) & mask;
+
+            if (keys[slot] == 0) {
+                keys[slot] = gram;
+                lists[slot] = new IntList(4);
+                if (++size * 2 > keys.length) {
+                    grow();
+                    add(gram, doc);
+                    return;
+                }
+            }
+            IntList list = lists[slot];
+            if (list.size == 0 || list.data[list.size - 1] != doc) list.add(doc);
+        }
+
+        void trim() {
+            for (IntList list : lists) {
+                if (list != null) list.trim();
+            }
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            IntList[] oldLists = lists;
+            keys = new long[oldKeys.length * 2];
+            lists = new IntList[oldKeys.length * 2];
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] == 0) continue;
+                int slot = hash(oldKeys[i]) & mask;
+                while (keys[slot] != 0) slot = (slot + 1) & mask;
+                keys[slot] = oldKeys[i];
+                lists[slot] = oldLists[i];
+            }
+        }
+
+        private static int hash(long gram) {
+            long h = gram * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+
+    // The best `limit` matches seen so far, one per song
+    private static final class TopMatches {
+        private final int limit;
+        private final List<long[]> entries = new ArrayList<>();
+
+        TopMatches(int limit) {
+            this.limit = limit;
+        }
+
+        boolean isFull() {
+            return entries.size() >= limit;
+        }
+
+        int worstDistance() {
+            return (int) (entries.get(entries.size() - 1)[0] >>> 48);
+        }
+
+        // Title matches rank before artist matches at the same distance, then closer length
+        void offer(int songId, int distance, boolean viaArtist, int lengthGap) {
+            long key = ((long) distance << 48) | ((viaArtist ? 1L : 0L) << 47) | ((long) Math.min(lengthGap, 0x7FFF) << 32)
+                    | (songId & 0xFFFFFFFFL);
+            for (int i = 0; i < entries.size(); i++) {
+                if ((int) entries.get(i)[1] == songId) {
+                    if (entries.get(i)[0] <= key) return;
+                    entries.remove(i);
+                    break;
+                }
+            }
+            if (isFull() && key >= entries.get(entries.size() - 1)[0]) return;
+
+            int at = 0;
+            while (at < entries.size() && entries.get(at)[0] < key) at++;
+            entries.add(at, new long[]{key, songId});
+            if (entries.size() > limit) entries.remove(entries.size() - 1);
+        }
+
+        List<Match> toMatches() {
+            return entries.stream().map(e -> new Match((int) e[1], (int) (e[0] >>> 48))).toList();
+        }
+    }
+
+    private static final class IntList {
+        int[] data;
+        int size;
+
+        IntList(int capacity) {
+            data = new int[capacity];
+        }
+
+        void add(int value) {
+            if (size == data.length) data = Arrays.copyOf(data, Math.max(4, size * 2));
+            data[size++] = value;
+        }
+
+        void trim() {
+            if (data.length != size) data = Arrays.copyOf(data, size);
+        }
+    }
+}
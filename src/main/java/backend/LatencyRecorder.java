@@ -0,0 +1,48 @@
+package backend;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the most recent latency samples in a ring buffer and reports percentiles over them.
+ */
+public class LatencyRecorder {
+
+    private final String name;
+    private final long[] samples;
+    private long count;
+
+    public LatencyRecorder(String name, int capacity) {
+        this.name = name;
+        this.samples = new long[capacity];
+    }
+
+    public synchronized void record(long nanos) {
+        samples[(int) (count % samples.length)] = nanos;
+        count++;
+    }
+
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    public synchronized long count() {
+        return count;
+    }
+
+    // p in [0, 100], over the retained window; 0 when nothing has been recorded
+    public synchronized double percentileMillis(double p) {
+        int size = (int) Math.min(count, samples.length);
+        if (size == 0) return 0;
+
+        long[] sorted = Arrays.copyOf(samples, size);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(p / 100.0 * size) - 1;
+        return sorted[Math.max(0, Math.min(size - 1, index))] / 1_000_000.0;
+    }
+
+    @Override
+    public String toString() {
+        return "%s: %d samples, p50 %.2f ms, p99 %.2f ms, max %.2f ms"
+                .formatted(name, count(), percentileMillis(50), percentileMillis(99), percentileMillis(100));
+    }
+}
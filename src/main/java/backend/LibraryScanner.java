@@ -0,0 +1,301 @@
+package backend;
+
+import database.DbAssist;
+import database.LibraryImporter;
+import database.LibraryImporter.FileStamp;
+import database.LibraryImporter.ScannedFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Indexes the MP3 files under a folder. Sub-folders are listed in parallel on a fork/join pool,
+ * files whose size and mtime match the manifest from the last scan are skipped, and the rest are
+ * parsed by {@link AudioMetadata} on a pool of {@link #PARSERS} threads. Results are handed to
+ * {@link LibraryImporter} in batches of {@link #BATCH_SIZE} as they complete, so writing overlaps
+ * parsing. Songs of indexed files that have since disappeared are deleted. Scans and syncs run
+ * one at a time and block until done; call them off the JavaFX thread.
+ */
+public class LibraryScanner {
+
+    public static final Path DEFAULT_ROOT = Paths.get("data/audiofiles");
+
+    private static final int BATCH_SIZE = 500;
+    private static final int PARSERS = Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
+
+    public interface ProgressListener {
+        void onProgress(int parsed, int toParse);
+    }
+
+    // removed counts indexed files that are no longer on disk
+    public record Result(int files, int unchanged, int added, int updated, int failed, int removed, long millis) {
+        @Override
+        public String toString() {
+            return "%d files, %d unchanged, %d added, %d updated, %d failed, %d removed (%d ms)"
+                    .formatted(files, unchanged, added, updated, failed, removed, millis);
+        }
+    }
+
+    private record Found(Path path, String key, long size, long modifiedMillis) {}
+
+    // unreadable holds the keys of entries and folders that could not be read, so their state is unknown
+    private record Listing(List<Found> files, List<String> unreadable) {}
+
+    // Two scans would both insert a file that is new to each of them
+    private static final Object WRITE_LOCK = new Object();
+
+    private LibraryScanner() {
+    }
+
+    public static Result scan(Path root, ProgressListener listener) {
+        long start = System.nanoTime();
+        if (!Files.isDirectory(root)) {
+            System.err.println("❌ Music folder not found: " + root);
+            return new Result(0, 0, 0, 0, 0, 0, 0);
+        }
+
+        synchronized (WRITE_LOCK) {
+            Map<String, FileStamp> manifest = LibraryImporter.loadManifest(key(root) + "/");
+            Listing listing = ForkJoinPool.commonPool().invoke(new Walk(root));
+
+            Set<String> gone = new HashSet<>(manifest.keySet());
+            listing.files().forEach(file -> gone.remove(file.key()));
+            keepUnreadable(gone, listing.unreadable());
+
+            Result result = apply(listing.files(), manifest, gone, listener, start);
+            System.out.println("📂 Library scan of " + root + ": " + result);
+            return result;
+        }
+    }
+
+    /**
+     * Bring just the touched paths up to date, as reported by {@link LibraryWatcher}. Paths that
+     * exist are indexed unless the manifest still matches them; a folder counts as every file in
+     * it, and indexed files missing from it are treated as gone. Paths that are gone delete the
+     * songs of that file, or of every indexed file under it.
+     */
+    public static Result sync(Collection<Path> touched) {
+        long start = System.nanoTime();
+
+        synchronized (WRITE_LOCK) {
+            // A file inside a touched folder is often reported on its own as well
+            Map<String, Found> found = new LinkedHashMap<>();
+            Set<String> gone = new HashSet<>();
+            List<String> unreadable = new ArrayList<>();
+            for (Path path : new HashSet<>(touched)) {
+                try {
+                    BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+                    if (attrs.isDirectory()) {
+                        Set<String> indexed = new HashSet<>(LibraryImporter.loadManifest(key(path) + "/").keySet());
+                        Listing listing = ForkJoinPool.commonPool().invoke(new Walk(path));
+                        for (Found file : listing.files()) {
+                            found.put(file.key(), file);
+                            indexed.remove(file.key());
+                        }
+                        gone.addAll(indexed);
+                        unreadable.addAll(listing.unreadable());
+                    } else if (attrs.isRegularFile() && isMp3(path)) {
+                        found.put(key(path), found(path, attrs));
+                    }
+                } catch (NoSuchFileException e) {
+                    if (isMp3(path)) gone.add(key(path));
+                    gone.addAll(LibraryImporter.loadManifest(key(path) + "/").keySet());
+                } catch (IOException e) {
+                    System.err.println("⚠️ Could not read " + path + ": " + e.getMessage());
+                }
+            }
+            gone.removeAll(found.keySet());
+            keepUnreadable(gone, unreadable);
+
+            Map<String, FileStamp> manifest = LibraryImporter.loadStamps(found.keySet());
+            Result result = apply(new ArrayList<>(found.values()), manifest, gone, null, start);
+            System.out.println("📂 Library sync: " + result);
+            return result;
+        }
+    }
+
+    private static Result apply(List<Found> found, Map<String, FileStamp> manifest, Set<String> gone,
+                                ProgressListener listener, long start) {
+        List<Found> changed = new ArrayList<>();
+        for (Found file : found) {
+            FileStamp stamp = manifest.get(file.key());
+            if (stamp == null || stamp.size() != file.size() || stamp.modifiedMillis() != file.modifiedMillis()) {
+                changed.add(file);
+            }
+        }
+
+        LibraryImporter importer = new LibraryImporter();
+        int failed = parseAndImport(changed, importer, listener);
+        importer.finish();
+
+        if (!gone.isEmpty()) {
+            DbAssist.deleteSongsByFile(gone);
+            LibraryImporter.forget(gone);
+        }
+
+        return new Result(found.size(), found.size() - changed.size(), importer.added(), importer.updated(),
+                failed, gone.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // Returns the number of files that could not be read or written
+    private static int parseAndImport(List<Found> files, LibraryImporter importer, ProgressListener listener) {
+        if (files.isEmpty()) return 0;
+
+        ExecutorService parsers = Executors.newFixedThreadPool(PARSERS, runnable -> {
+            Thread thread = new Thread(runnable, "library-scan");
+            thread.setDaemon(true);
+            return thread;
+        });
+        CompletionService<ScannedFile> completion = new ExecutorCompletionService<>(parsers);
+        for (Found file : files) {
+            completion.submit(() -> parse(file));
+        }
+
+        int failed = 0;
+        List<ScannedFile> batch = new ArrayList<>(BATCH_SIZE);
+        try {
+            for (int done = 1; done <= files.size(); done++) {
+                ScannedFile scanned = completion.take().get();
+                if (scanned == null) failed++;
+                else batch.add(scanned);
+
+                if (batch.size() == BATCH_SIZE || (done == files.size() && !batch.isEmpty())) {
+                    if (!importer.apply(batch)) failed += batch.size();
+                    batch.clear();
+                }
+                if (listener != null && (done % 50 == 0 || done == files.size())) {
+                    listener.onProgress(done, files.size());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("⚠️ Library scan interrupted");
+        } catch (ExecutionException e) {
+            System.err.println("❌ Library scan failed: " + e.getCause().getMessage());
+        } finally {
+            parsers.shutdownNow();
+        }
+        return failed;
+    }
+
+    // null when the file is not readable MP3
+    private static ScannedFile parse(Found file) {
+        try {
+            AudioMetadata meta = AudioMetadata.read(file.path());
+            if (meta == null) {
+                System.err.println("⚠️ No MPEG audio found in " + file.key());
+                return null;
+            }
+
+            String name = file.path().getFileName().toString();
+            String baseName = name.substring(0, name.length() - ".mp3".length());
+            return new ScannedFile(file.key(), file.size(), file.modifiedMillis(),
+                    orDefault(meta.title(), baseName), orDefault(meta.artist(), "Unknown Artist"),
+                    orDefault(meta.language(), "Unknown"), orDefault(meta.genre(), "Unknown"),
+                    meta.durationMillis(), meta.bitrateKbps());
+        } catch (IOException e) {
+            System.err.println("❌ Failed to read " + file.key() + ": " + e.getMessage());
+            return null;
+        } catch (RuntimeException e) {
+            // A malformed tag must cost only its own file, not the rest of the scan
+            System.err.println("❌ Failed to parse " + file.key() + ": " + e);
+            return null;
+        }
+    }
+
+    // A file that could not be listed or read is not known to be gone, and neither is anything under it
+    private static void keepUnreadable(Set<String> gone, List<String> unreadable) {
+        for (String key : unreadable) {
+            String prefix = key + "/";
+            gone.removeIf(path -> path.equals(key) || path.startsWith(prefix));
+        }
+    }
+
+    private static boolean isMp3(Path path) {
+        return path.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".mp3");
+    }
+
+    private static Found found(Path path, BasicFileAttributes attrs) {
+        return new Found(path, key(path), attrs.size(), attrs.lastModifiedTime().toMillis());
+    }
+
+    private static String orDefault(String value, String fallback) {
+        return value == null || value.isBlank() ? fallback : value;
+    }
+
+    // The form songs.file_name uses: the path as given, with forward slashes
+    static String key(Path path) {
+        return path.toString().replace(File.separatorChar, '/');
+    }
+
+    /**
+     * Lists one folder, forking a task for every sub-folder and joining them once its own files are
+     * collected. An entry that cannot be read is reported and skipped; a folder whose listing breaks
+     * off is reported as a whole.
+     */
+    @SuppressWarnings("serial")
+    private static final class Walk extends RecursiveTask<Listing> {
+        private final Path dir;
+
+        Walk(Path dir) {
+            this.dir = dir;
+        }
+
+        @Override
+        protected Listing compute() {
+            List<Found> files = new ArrayList<>();
+            List<String> unreadable = new ArrayList<>();
+            List<Walk> subfolders = new ArrayList<>();
+
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+                for (Path entry : entries) {
+                    try {
+                        BasicFileAttributes attrs = Files.readAttributes(entry, BasicFileAttributes.class);
+                        if (attrs.isDirectory()) {
+                            Walk walk = new Walk(entry);
+                            walk.fork();
+                            subfolders.add(walk);
+                        } else if (attrs.isRegularFile() && isMp3(entry)) {
+                            files.add(found(entry, attrs));
+                        }
+                    } catch (IOException e) {
+                        System.err.println("⚠️ Could not read " + entry + ": " + e.getMessage());
+                        unreadable.add(key(entry));
+                    }
+                }
+            } catch (IOException | DirectoryIteratorException e) {
+                System.err.println("⚠️ Could not list " + dir + ": " + e.getMessage());
+                unreadable.add(key(dir));
+            }
+
+            for (Walk walk : subfolders) {
+                Listing listing = walk.join();
+                files.addAll(listing.files());
+                unreadable.addAll(listing.unreadable());
+            }
+            return new Listing(files, unreadable);
+        }
+    }
+}
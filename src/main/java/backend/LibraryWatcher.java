@@ -0,0 +1,140 @@
+package backend;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the catalog in step with the music folder while the app runs. Create, modify and delete
+ * events are collected until the folder has been quiet for {@link #QUIET_MILLIS}, or at most
+ * {@link #MAX_DELAY_MILLIS} after the first one, and the touched paths are then handed to
+ * {@link LibraryScanner#sync} together. Copying thousands of files in therefore costs a few
+ * transactions of {@code LibraryScanner}'s batch size rather than one per file. Every sub-folder
+ * is watched, including ones created later. When the OS drops a folder's events, the whole folder
+ * is synced instead, which still skips files the manifest shows unchanged.
+ */
+public class LibraryWatcher implements AutoCloseable {
+
+    private static final long QUIET_MILLIS = 750;
+    private static final long MAX_DELAY_MILLIS = 10_000;
+
+    private final Path root;
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> folders = new HashMap<>();
+    private final Set<Path> touched = new HashSet<>();
+    private final Thread thread;
+    private boolean overflowed;
+
+    private LibraryWatcher(Path root) throws IOException {
+        this.root = root;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        registerTree(root);
+
+        thread = new Thread(this::run, "library-watcher");
+        thread.setDaemon(true);
+    }
+
+    // Watch root and everything below it until close(); call once the schema is ready
+    public static LibraryWatcher start(Path root) throws IOException {
+        LibraryWatcher watcher = new LibraryWatcher(root);
+        System.out.println("👀 Watching " + root + " (" + watcher.folders.size() + " folders)");
+        watcher.thread.start();
+        return watcher;
+    }
+
+    @Override
+    public void close() {
+        thread.interrupt();
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            System.err.println("⚠️ Failed to close library watcher: " + e.getMessage());
+        }
+    }
+
+    private void run() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                collect(watchService.take());
+
+                // Keep collecting while events are still arriving, up to the maximum delay
+                long deadline = System.currentTimeMillis() + MAX_DELAY_MILLIS;
+                long wait;
+                while ((wait = Math.min(QUIET_MILLIS, deadline - System.currentTimeMillis())) > 0) {
+                    WatchKey more = watchService.poll(wait, TimeUnit.MILLISECONDS);
+                    if (more == null) break;
+                    collect(more);
+                }
+
+                flush();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Closed
+        }
+    }
+
+    private void collect(WatchKey key) {
+        Path folder = folders.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            // Events were dropped; syncing the whole folder compares it with the manifest instead
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                if (folder != null) touched.add(folder);
+                else overflowed = true;
+                continue;
+            }
+            if (folder == null) continue;
+
+            Path path = folder.resolve((Path) event.context());
+            // Files moved in together with a new folder raise no events of their own
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                try {
+                    registerTree(path);
+                } catch (IOException e) {
+                    System.err.println("⚠️ Could not watch " + path + ": " + e.getMessage());
+                }
+            }
+            touched.add(path);
+        }
+
+        // A deleted folder's key is no longer valid
+        if (!key.reset()) folders.remove(key);
+    }
+
+    private void flush() {
+        try {
+            if (overflowed) LibraryScanner.scan(root, null);
+            else if (!touched.isEmpty()) LibraryScanner.sync(touched);
+        } catch (RuntimeException e) {
+            System.err.println("❌ Library sync failed: " + e.getMessage());
+        }
+        touched.clear();
+        overflowed = false;
+    }
+
+    private void registerTree(Path start) throws IOException {
+        Files.walkFileTree(start, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                WatchKey key = dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+                folders.put(key, dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
@@ -0,0 +1,252 @@
+package backend;
+
+import database.LibraryImporter;
+import database.LibraryImporter.FileStamp;
+import javazoom.jl.decoder.JavaLayerException;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures the integrated loudness of every indexed file (ITU-R BS.1770 / EBU R128: K-weighting,
+ * 400 ms blocks, absolute and relative gate) and its sample peak, and stores the gain that brings
+ * it down to {@link #TARGET_LUFS} in {@code library_files}; {@link PlaybackEngine} applies that
+ * gain on top of the user's volume. Quiet tracks are never boosted. Each file is stored as soon
+ * as it is measured, and a rescan that sees a file change clears its gain, so an interrupted run
+ * carries on where it stopped and a later one only decodes new and changed files. Workers run at
+ * the lowest priority, and while something is playing only one of them goes on, resting after
+ * each track for as long as it took to decode.
+ */
+public class LoudnessAnalyzer {
+
+    public static final double TARGET_LUFS = -16;
+
+    private static final int WORKERS = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    private static final double ABSOLUTE_GATE_LUFS = -70;
+    private static final double RELATIVE_GATE_LU = -10;
+    private static final long IDLE_POLL_MILLIS = 1000;
+
+    // Runs requested while one is going; any number of them collapse into one more run
+    private static final AtomicInteger requested = new AtomicInteger();
+    private static final AtomicBoolean listening = new AtomicBoolean();
+
+    /** Loudness of one track; loudness is null when nothing in it is above the absolute gate. */
+    record Measurement(Double loudnessLufs, double peak) {
+        double gainDb() {
+            return loudnessLufs == null ? 0 : Math.min(0, TARGET_LUFS - loudnessLufs);
+        }
+    }
+
+    private LoudnessAnalyzer() {
+    }
+
+    /**
+     * Analyse every file under root that has no gain yet, in the background, and again whenever a
+     * scan records new or changed files. Returns at once.
+     */
+    public static void start(Path root) {
+        if (listening.compareAndSet(false, true)) {
+            LibraryImporter.addRecordedListener(() -> start(root));
+        }
+        if (requested.getAndIncrement() > 0) return;
+
+        Thread thread = new Thread(() -> {
+            do {
+                requested.set(1);
+                analyzeLibrary(root);
+            } while (requested.decrementAndGet() > 0);
+        }, "loudness");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    private static void analyzeLibrary(Path root) {
+        Map<String, FileStamp> pending = LibraryImporter.loadUnanalyzed(LibraryScanner.key(root) + "/");
+        if (pending.isEmpty()) return;
+
+        long start = System.nanoTime();
+        System.out.println("🔊 Measuring loudness of " + pending.size() + " files on " + WORKERS + " threads");
+        Queue<Map.Entry<String, FileStamp>> queue = new ConcurrentLinkedQueue<>(pending.entrySet());
+        AtomicInteger analyzed = new AtomicInteger();
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < WORKERS; i++) {
+            boolean keepsGoing = i == 0;
+            Thread worker = new Thread(() -> work(queue, keepsGoing, analyzed), "loudness-" + i);
+            worker.setDaemon(true);
+            worker.setPriority(Thread.MIN_PRIORITY);
+            workers.add(worker);
+            worker.start();
+        }
+
+        try {
+            for (Thread worker : workers) worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            workers.forEach(Thread::interrupt);
+            System.err.println("⚠️ Loudness analysis interrupted");
+            return;
+        }
+        System.out.println("🔊 Loudness: " + analyzed.get() + " of " + pending.size() + " files measured in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    // keepsGoing: the one worker that carries on, throttled, while something is playing
+    private static void work(Queue<Map.Entry<String, FileStamp>> queue, boolean keepsGoing, AtomicInteger analyzed) {
+        try {
+            Map.Entry<String, FileStamp> entry;
+            while (!Thread.currentThread().isInterrupted() && (entry = queue.poll()) != null) {
+                if (!keepsGoing) {
+                    while (PlaybackEngine.INSTANCE.isPlaying()) Thread.sleep(IDLE_POLL_MILLIS);
+                }
+
+                long began = System.nanoTime();
+                Measurement measured = measure(entry.getKey());
+                if (measured != null && LibraryImporter.storeLoudness(entry.getKey(), entry.getValue(),
+                        measured.loudnessLufs(), measured.peak(), measured.gainDb())) {
+                    analyzed.incrementAndGet();
+                }
+
+                if (PlaybackEngine.INSTANCE.isPlaying()) {
+                    Thread.sleep((System.nanoTime() - began) / 1_000_000);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // null when the file cannot be decoded
+    static Measurement measure(String path) {
+        try {
+            Meter meter = new Meter();
+            PcmDecoder.decode(Paths.get(path), meter);
+            return meter.result();
+        } catch (IOException | JavaLayerException e) {
+            System.err.println("❌ Could not measure loudness of " + path + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * K-weighted mean square of every channel in 100 ms steps; four steps make one 400 ms gating
+     * block, so consecutive blocks overlap by 75%. The filters are derived for the track's sample
+     * rate, since the coefficients in BS.1770 are only given for 48 kHz.
+     */
+    private static final class Meter implements PcmDecoder.Sink {
+        private final List<Double> steps = new ArrayList<>();
+        private Biquad[] shelf;
+        private Biquad[] highPass;
+        private int stepLength;
+        private int stepFill;
+        private double stepEnergy;
+        private int peak;
+
+        @Override
+        public void accept(short[] samples, int length, int channels, int sampleRate) {
+            if (shelf == null || shelf.length != channels) {
+                shelf = new Biquad[channels];
+                highPass = new Biquad[channels];
+                for (int c = 0; c < channels; c++) {
+                    shelf[c] = Biquad.highShelf(sampleRate);
+                    highPass[c] = Biquad.highPass(sampleRate);
+                }
+                stepLength = sampleRate / 10;
+            }
+
+            for (int i = 0; i + channels <= length; i += channels) {
+                for (int c = 0; c < channels; c++) {
+                    int value = samples[i + c];
+                    peak = Math.max(peak, Math.abs(value));
+                    double weighted = highPass[c].apply(shelf[c].apply(value / 32768.0));
+                    stepEnergy += weighted * weighted;
+                }
+                if (++stepFill == stepLength) {
+                    steps.add(stepEnergy / stepLength);
+                    stepFill = 0;
+                    stepEnergy = 0;
+                }
+            }
+        }
+
+        Measurement result() {
+            List<Double> blocks = new ArrayList<>();
+            for (int i = 3; i < steps.size(); i++) {
+                blocks.add((steps.get(i - 3) + steps.get(i - 2) + steps.get(i - 1) + steps.get(i)) / 4);
+            }
+
+            double absoluteGate = power(ABSOLUTE_GATE_LUFS);
+            double ungated = mean(blocks, absoluteGate);
+            if (Double.isNaN(ungated)) return new Measurement(null, peak / 32768.0);
+
+            double relativeGate = power(loudness(ungated) + RELATIVE_GATE_LU);
+            return new Measurement(loudness(mean(blocks, Math.max(absoluteGate, relativeGate))), peak / 32768.0);
+        }
+
+        // Mean of the blocks above gate, NaN when there are none
+        private static double mean(List<Double> blocks, double gate) {
+            double sum = 0;
+            int count = 0;
+            for (double block : blocks) {
+                if (block <= gate) continue;
+                sum += block;
+                count++;
+            }
+            return count == 0 ? Double.NaN : sum / count;
+        }
+
+        private static double loudness(double power) {
+            return -0.691 + 10 * Math.log10(power);
+        }
+
+        private static double power(double loudness) {
+            return Math.pow(10, (loudness + 0.691) / 10);
+        }
+    }
+
+    /** One second-order IIR section, direct form II transposed. */
+    private static final class Biquad {
+        private final double b0, b1, b2, a1, a2;
+        private double z1, z2;
+
+        private Biquad(double b0, double b1, double b2, double a0, double a1, double a2) {
+            this.b0 = b0 / a0;
+            this.b1 = b1 / a0;
+            this.b2 = b2 / a0;
+            this.a1 = a1 / a0;
+            this.a2 = a2 / a0;
+        }
+
+        // K-weighting stage 1: about +4 dB above 1.5 kHz, modelling the head
+        static Biquad highShelf(int sampleRate) {
+            double k = Math.tan(Math.PI * 1681.974450955533 / sampleRate);
+            double q = 0.7071752369554196;
+            double vh = Math.pow(10, 3.999843853973347 / 20);
+            double vb = Math.pow(vh, 0.4996667741545416);
+            return new Biquad(vh + vb * k / q + k * k, 2 * (k * k - vh), vh - vb * k / q + k * k,
+                    1 + k / q + k * k, 2 * (k * k - 1), 1 - k / q + k * k);
+        }
+
+        // K-weighting stage 2: the RLB high-pass at about 38 Hz
+        static Biquad highPass(int sampleRate) {
+            double k = Math.tan(Math.PI * 38.13547087602444 / sampleRate);
+            double q = 0.5003270373238773;
+            return new Biquad(1, -2, 1, 1 + k / q + k * k, 2 * (k * k - 1), 1 - k / q + k * k);
+        }
+
+        double apply(double x) {
+            double y = b0 * x + z1;
+            z1 = b1 * x - a1 * y + z2;
+            z2 = b2 * x - a2 * y;
+            return y;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package backend;
+
+import javazoom.jl.decoder.Bitstream;
+import javazoom.jl.decoder.Decoder;
+import javazoom.jl.decoder.Header;
+import javazoom.jl.decoder.JavaLayerException;
+import javazoom.jl.decoder.SampleBuffer;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Decodes an MP3 file to 16-bit PCM with JLayer and hands it over one frame at a time, so
+ * analysers never hold a whole track in memory.
+ */
+final class PcmDecoder {
+
+    interface Sink {
+        // Interleaved samples[0, length), channels per sample frame
+        void accept(short[] samples, int length, int channels, int sampleRate);
+    }
+
+    private PcmDecoder() {
+    }
+
+    static void decode(Path file, Sink sink) throws IOException, JavaLayerException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file), 64 * 1024)) {
+            Bitstream bitstream = new Bitstream(in);
+            Decoder decoder = new Decoder();
+            try {
+                Header header;
+                while ((header = bitstream.readFrame()) != null) {
+                    SampleBuffer output = (SampleBuffer) decoder.decodeFrame(header, bitstream);
+                    sink.accept(output.getBuffer(), output.getBufferLength(), output.getChannelCount(),
+                            output.getSampleFrequency());
+                    bitstream.closeFrame();
+                }
+            } finally {
+                bitstream.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,351 @@
+package backend;
+
+import database.DbFinder;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * What plays next. Tracks are produced one at a time as the listener moves forward, so starting
+ * playback costs the same for a 10-song playlist and a million-song catalog; tracks already heard
+ * are remembered so {@link #previous()} walks back through them. Random sources may query the
+ * database, so call {@link #current()}, {@link #next()} and {@link #previous()} off the JavaFX
+ * thread.
+ */
+public class PlayQueue {
+
+    // Where the tracks come from; kept with a saved session so the queue can be rebuilt
+    public enum Mode { IN_ORDER, SINGLE, SHUFFLED, RANDOM_CATALOG, WEIGHTED_CATALOG, RADIO }
+
+    /**
+     * Everything needed to rebuild a queue: its mode and playlist, how far the source has read
+     * the playlist, and the tracks heard so far with the current one at position. A shuffle also
+     * keeps the slots of its round that hold another track, as slot, track pairs in swaps.
+     */
+    public record State(Mode mode, List<Integer> playlist, int cursor, List<Integer> swaps,
+                        List<Integer> history, int position) {}
+
+    // Next track, or null when there is nothing to play
+    interface Source {
+        Integer draw();
+
+        // Index of the next playlist entry to draw, for sources that read a playlist in order
+        default int cursor() {
+            return 0;
+        }
+    }
+
+    private static final int HISTORY_LIMIT = 1000;
+    private static final int CATALOG_BATCH = 16;
+    private static final int NO_REPEAT_WINDOW = 50;
+    private static final int REPEAT_RETRIES = 32;
+    private static final int RADIO_CANDIDATES = 10;
+    private static final int RADIO_SEEDS = 3;
+
+    private final Mode mode;
+    private final List<Integer> playlist;
+    private final Source source;
+    private final List<Integer> history = new ArrayList<>();
+    private int position = -1;
+
+    private PlayQueue(Mode mode, List<Integer> playlist, Source source) {
+        this.mode = mode;
+        this.playlist = playlist;
+        this.source = source;
+    }
+
+    // ids from startIndex onwards, wrapping around at the end
+    public static PlayQueue inOrder(List<Integer> ids, int startIndex) {
+        List<Integer> order = List.copyOf(ids);
+        return new PlayQueue(Mode.IN_ORDER, order, new InOrder(order, startIndex, true));
+    }
+
+    // Just one track, played once
+    public static PlayQueue single(int songId) {
+        List<Integer> order = List.of(songId);
+        return new PlayQueue(Mode.SINGLE, order, new InOrder(order, 0, false));
+    }
+
+    // ids[startIndex] first, then the rest in random order; a new order starts after each round
+    public static PlayQueue shuffled(List<Integer> ids, int startIndex) {
+        List<Integer> order = List.copyOf(ids);
+        return new PlayQueue(Mode.SHUFFLED, order, new LazyShuffle(order, startIndex));
+    }
+
+    // Songs drawn uniformly at random from the whole catalog, never holding more than one batch
+    public static PlayQueue randomCatalog() {
+        ArrayDeque<Integer> batch = new ArrayDeque<>();
+        return new PlayQueue(Mode.RANDOM_CATALOG, List.of(), withoutRepeats(() -> {
+            if (batch.isEmpty()) batch.addAll(DbFinder.randomSongIds(CATALOG_BATCH));
+            return batch.poll();
+        }));
+    }
+
+    // Songs drawn from the whole catalog with higher-rated songs coming up more often
+    public static PlayQueue weightedCatalog() {
+        return new PlayQueue(Mode.WEIGHTED_CATALOG, List.of(), withoutRepeats(() -> {
+            RatingSampler.CATALOG.ensureLoaded();
+            int id = RatingSampler.CATALOG.draw();
+            return id < 0 ? null : id;
+        }));
+    }
+
+    // ids from startIndex to the end, then on and on with songs often played with the last ones heard
+    public static PlayQueue radio(List<Integer> ids, int startIndex) {
+        List<Integer> order = List.copyOf(ids);
+        return new PlayQueue(Mode.RADIO, order, new Radio(order, startIndex));
+    }
+
+    /**
+     * Rebuild a queue saved with {@link #state()}. Playlist sources carry on from their cursor, a
+     * shuffle from the same point of the same round, and the sources that avoid repeats remember
+     * the tracks of the saved history, every draw of theirs being in it.
+     */
+    public static PlayQueue restore(State state) {
+        List<Integer> order = List.copyOf(state.playlist());
+        PlayQueue queue = switch (state.mode()) {
+            case IN_ORDER -> new PlayQueue(Mode.IN_ORDER, order, new InOrder(order, state.cursor(), true));
+            case SINGLE -> new PlayQueue(Mode.SINGLE, order, new InOrder(order, state.cursor(), false));
+            case SHUFFLED -> new PlayQueue(Mode.SHUFFLED, order, LazyShuffle.resume(order, state.cursor(), state.swaps()));
+            case RANDOM_CATALOG -> randomCatalog();
+            case WEIGHTED_CATALOG -> weightedCatalog();
+            case RADIO -> new PlayQueue(Mode.RADIO, order, new Radio(order, state.cursor()));
+        };
+        queue.history.addAll(state.history());
+        queue.position = Math.min(state.position(), queue.history.size() - 1);
+        if (queue.source instanceof Radio radio) state.history().forEach(radio::remember);
+        if (queue.source instanceof NoRepeats window) state.history().forEach(window::remember);
+        return queue;
+    }
+
+    public synchronized State state() {
+        List<Integer> swaps = source instanceof LazyShuffle shuffle ? shuffle.swaps() : List.of();
+        return new State(mode, playlist, source.cursor(), swaps, List.copyOf(history), position);
+    }
+
+    private static Source withoutRepeats(Source source) {
+        return new NoRepeats(source);
+    }
+
+    // Redraws songs among the last NO_REPEAT_WINDOW; a catalog too small to avoid them repeats anyway
+    private static final class NoRepeats implements Source {
+        private final Source source;
+        private final ArrayDeque<Integer> recent = new ArrayDeque<>();
+        private final Set<Integer> recentIds = new HashSet<>();
+
+        NoRepeats(Source source) {
+            this.source = source;
+        }
+
+        @Override
+        public Integer draw() {
+            Integer id = source.draw();
+            for (int retry = 0; id != null && recentIds.contains(id) && retry < REPEAT_RETRIES; retry++) {
+                id = source.draw();
+            }
+            if (id != null) remember(id);
+            return id;
+        }
+
+        void remember(int id) {
+            if (!recentIds.add(id)) return;
+            recent.add(id);
+            if (recent.size() > NO_REPEAT_WINDOW) recentIds.remove(recent.poll());
+        }
+    }
+
+    // The track to play now; null when the queue has nothing to offer
+    public synchronized Integer current() {
+        if (position < 0) return next();
+        return history.get(position);
+    }
+
+    // null at the end of a queue that does not repeat
+    public synchronized Integer next() {
+        Integer id = peek(1);
+        if (id != null) position++;
+        return id;
+    }
+
+    // The track `ahead` places after the current one, drawn now and kept for when it is reached
+    public synchronized Integer peek(int ahead) {
+        while (history.size() <= position + ahead) {
+            Integer id = source.draw();
+            if (id == null) return null;
+
+            history.add(id);
+            if (history.size() > HISTORY_LIMIT && position > 0) {
+                history.remove(0);
+                position--;
+            }
+        }
+        return history.get(position + ahead);
+    }
+
+    // The track before the current one, or the current one again at the start of the history
+    public synchronized Integer previous() {
+        if (position > 0) position--;
+        return current();
+    }
+
+    // The playlist from a start index; wrapping starts over at the end, otherwise it just ends
+    private static final class InOrder implements Source {
+        private final List<Integer> order;
+        private final boolean wrap;
+        private int next;
+
+        InOrder(List<Integer> order, int startIndex, boolean wrap) {
+            this.order = order;
+            this.wrap = wrap;
+            this.next = startIndex >= 0 && startIndex <= order.size() ? startIndex : 0;
+        }
+
+        @Override
+        public Integer draw() {
+            if (order.isEmpty()) return null;
+            if (next == order.size()) {
+                if (!wrap) return null;
+                next = 0;
+            }
+            return order.get(next++);
+        }
+
+        @Override
+        public int cursor() {
+            return next;
+        }
+    }
+
+    /**
+     * The playlist first, then picks among the {@link #RADIO_CANDIDATES} songs most often played
+     * with the latest track, with a chance proportional to their score. A track nobody has played
+     * anything with hands over to the one before it, up to {@link #RADIO_SEEDS} back; when none
+     * has co-plays the catalog is drawn by rating, as {@link #weightedCatalog()} does.
+     */
+    private static final class Radio implements Source {
+        private final List<Integer> playlist;
+        private final ArrayDeque<Integer> recent = new ArrayDeque<>();
+        private final Set<Integer> recentIds = new HashSet<>();
+        private final Source fallback = withoutRepeats(() -> {
+            RatingSampler.CATALOG.ensureLoaded();
+            int id = RatingSampler.CATALOG.draw();
+            return id < 0 ? null : id;
+        });
+        private int next;
+
+        Radio(List<Integer> ids, int startIndex) {
+            this.playlist = List.copyOf(ids);
+            this.next = startIndex >= 0 && startIndex <= playlist.size() ? startIndex : 0;
+        }
+
+        @Override
+        public Integer draw() {
+            Integer id = next < playlist.size() ? playlist.get(next++) : recommend();
+            if (id == null) id = fallback.draw();
+            if (id != null) remember(id);
+            return id;
+        }
+
+        @Override
+        public int cursor() {
+            return next;
+        }
+
+        void remember(int id) {
+            if (!recentIds.add(id)) return;
+            recent.add(id);
+            if (recent.size() > NO_REPEAT_WINDOW) recentIds.remove(recent.poll());
+        }
+
+        private Integer recommend() {
+            CoPlayIndex.CATALOG.ensureLoaded();
+            Integer[] seeds = recent.toArray(new Integer[0]);
+            for (int i = seeds.length - 1; i >= Math.max(0, seeds.length - RADIO_SEEDS); i--) {
+                List<CoPlayIndex.Similar> similar = CoPlayIndex.CATALOG.similar(seeds[i], RADIO_CANDIDATES, recentIds::contains);
+                if (similar.isEmpty()) continue;
+
+                double total = similar.stream().mapToDouble(CoPlayIndex.Similar::score).sum();
+                if (!(total > 0 && total < Double.POSITIVE_INFINITY)) return similar.get(0).songId();
+                double pick = ThreadLocalRandom.current().nextDouble(total);
+                for (CoPlayIndex.Similar candidate : similar) {
+                    pick -= candidate.score();
+                    if (pick < 0) return candidate.songId();
+                }
+                return similar.get(similar.size() - 1).songId();
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Fisher–Yates run one step per draw. Swaps are recorded in a map instead of a shuffled copy,
+     * so each draw is O(1) and memory grows only with the number of tracks played.
+     */
+    private static final class LazyShuffle implements Source {
+        private final List<Integer> ids;
+        private final Map<Integer, Integer> swapped = new HashMap<>();
+        private int drawn;
+        private int firstSlot;
+
+        LazyShuffle(List<Integer> ids, int startIndex) {
+            this.ids = List.copyOf(ids);
+            this.firstSlot = startIndex >= 0 && startIndex < this.ids.size() ? startIndex : -1;
+        }
+
+        // Carry on with a round saved as its drawn count and swaps(); pairs out of range are dropped
+        static LazyShuffle resume(List<Integer> ids, int drawn, List<Integer> swaps) {
+            LazyShuffle shuffle = new LazyShuffle(ids, -1);
+            shuffle.drawn = Math.max(0, Math.min(drawn, ids.size()));
+            for (int i = 0; i + 1 < swaps.size(); i += 2) {
+                int slot = swaps.get(i);
+                if (slot >= shuffle.drawn && slot < ids.size()) shuffle.swapped.put(slot, swaps.get(i + 1));
+            }
+            return shuffle;
+        }
+
+        @Override
+        public int cursor() {
+            return drawn;
+        }
+
+        // The swapped slots still to be drawn from, as slot, track pairs
+        List<Integer> swaps() {
+            List<Integer> pairs = new ArrayList<>(2 * swapped.size());
+            swapped.forEach((slot, id) -> {
+                pairs.add(slot);
+                pairs.add(id);
+            });
+            return pairs;
+        }
+
+        @Override
+        public Integer draw() {
+            int size = ids.size();
+            if (size == 0) return null;
+            if (drawn == size) {
+                drawn = 0;
+                swapped.clear();
+            }
+
+            // Slots [0, drawn) hold the tracks already played this round
+            int pick = firstSlot >= 0 ? firstSlot : ThreadLocalRandom.current().nextInt(drawn, size);
+            firstSlot = -1;
+            int id = at(pick);
+            swapped.put(pick, at(drawn));
+            // Slot `drawn` is never read again
+            swapped.remove(drawn);
+            drawn++;
+            return id;
+        }
+
+        private int at(int slot) {
+            return swapped.getOrDefault(slot, ids.get(slot));
+        }
+    }
+}
@@ -0,0 +1,361 @@
+package backend;
+
+import database.AsyncDb;
+import database.DbFinder;
+import database.PlayHistory;
+import database.Song;
+import javafx.application.Platform;
+import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.ReadOnlyObjectProperty;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.beans.property.SimpleDoubleProperty;
+import javafx.scene.media.Media;
+import javafx.scene.media.MediaException;
+import javafx.scene.media.MediaPlayer;
+import javafx.util.Duration;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * The one place audio is played from. It owns the {@link PlayQueue}, moves on by itself at the end
+ * of each track and keeps MediaPlayers for the next {@link #PRELOAD_AHEAD} tracks buffering in the
+ * background, so a switch only has to start a player that is already READY. At most the current
+ * player and the preloaded ones are alive at any time; every other player is disposed as soon as
+ * it is replaced. Views observe {@link #playerProperty()} and {@link #currentSongProperty()} and
+ * rebind when they change. Call everything on the JavaFX thread.
+ */
+public class PlaybackEngine {
+
+    public static final PlaybackEngine INSTANCE = new PlaybackEngine();
+
+    // A song ready to start, with its linear loudness gain looked up on the database thread
+    private record Track(Song song, double gain) {}
+
+    public record Stats(long tracksStarted, long playersCreated, long playersDisposed) {
+        public long livePlayers() {
+            return playersCreated - playersDisposed;
+        }
+
+        @Override
+        public String toString() {
+            return "%d tracks started, %d players created, %d disposed, %d alive"
+                    .formatted(tracksStarted, playersCreated, playersDisposed, livePlayers());
+        }
+    }
+
+    private static final int MAX_SKIPS = 16;
+    private static final int PRELOAD_AHEAD = 2;
+    // While a track plays, its position is saved at most this often
+    private static final long SESSION_SAVE_NANOS = 5_000_000_000L;
+
+    private final ReadOnlyObjectWrapper<MediaPlayer> player = new ReadOnlyObjectWrapper<>();
+    private final ReadOnlyObjectWrapper<Song> currentSong = new ReadOnlyObjectWrapper<>();
+    private final DoubleProperty volume = new SimpleDoubleProperty(0.7);
+
+    // Players for upcoming tracks by song id, at most PRELOAD_AHEAD of them
+    private final Map<Integer, MediaPlayer> prepared = new LinkedHashMap<>();
+    private final LatencyRecorder switchLatency = new LatencyRecorder("Track switch", 256);
+
+    // Read by background work that backs off while something is playing
+    private volatile boolean playing;
+
+    private PlayQueue queue;
+    // Whether the current track played to its end, so leaving it is not counted as a skip
+    private boolean currentFinished;
+    private long lastSessionSave;
+    private long tracksStarted;
+    private long playersCreated;
+    private long playersDisposed;
+
+    private PlaybackEngine() {
+        volume.addListener((obs, oldVolume, newVolume) -> saveSession());
+    }
+
+    public ReadOnlyObjectProperty<MediaPlayer> playerProperty() {
+        return player.getReadOnlyProperty();
+    }
+
+    public ReadOnlyObjectProperty<Song> currentSongProperty() {
+        return currentSong.getReadOnlyProperty();
+    }
+
+    // Shared by every track; changes apply to the playing one right away
+    public DoubleProperty volumeProperty() {
+        return volume;
+    }
+
+    // From a switch being asked for (button or end of track) until the next track is playing
+    public LatencyRecorder switchLatency() {
+        return switchLatency;
+    }
+
+    // Safe to call from any thread
+    public boolean isPlaying() {
+        return playing;
+    }
+
+    public Stats stats() {
+        return new Stats(tracksStarted, playersCreated, playersDisposed);
+    }
+
+    // Replace whatever is playing with the queue's current track
+    public void play(PlayQueue playQueue) {
+        queue = playQueue;
+        releasePrepared(Set.of());
+        step(PlayQueue::current);
+    }
+
+    public void next() {
+        step(PlayQueue::next);
+    }
+
+    public void previous() {
+        step(PlayQueue::previous);
+    }
+
+    public void togglePause() {
+        MediaPlayer current = player.get();
+        if (current == null) return;
+        if (current.getStatus() == MediaPlayer.Status.PLAYING) current.pause();
+        else current.play();
+        saveSession();
+    }
+
+    public void seek(Duration position) {
+        MediaPlayer current = player.get();
+        if (current == null) return;
+        current.seek(position);
+        saveSession(position);
+    }
+
+    /**
+     * Put a saved session back: the queue as it was and its track paused at the saved position,
+     * ready to play. Needs nothing from the database, so it can run while the schema is still
+     * being set up; the track's gain and the tracks after it follow once the database answers.
+     */
+    public void resume(SessionStore.Session session) {
+        long requested = System.nanoTime();
+        Song song = session.song();
+        if (!new File(song.fileName()).exists()) return;
+        MediaPlayer restored = create(song);
+        if (restored == null) return;
+
+        queue = PlayQueue.restore(session.queue());
+        releasePrepared(Set.of());
+        MediaPlayer previous = player.get();
+        attach(restored, song, 1.0, 0);
+        restored.setOnReady(() -> {
+            restored.seek(Duration.millis(session.positionMillis()));
+            System.out.printf("⏱️ Session resumed in %.1f ms, %d ms after launch%n", (System.nanoTime() - requested) / 1e6,
+                    System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime());
+        });
+
+        currentFinished = false;
+        currentSong.set(song);
+        player.set(restored);
+        if (previous != null) dispose(previous);
+
+        onFx(AsyncDb.supply(() -> DbFinder.findTrackGainDb(song.fileName())), gainDb -> {
+            if (player.get() == restored) restored.volumeProperty().bind(volume.multiply(Math.pow(10, gainDb / 20)));
+        });
+        preloadUpcoming();
+    }
+
+    // End the session and release every native player; the session stays saved for the next start
+    public void stop() {
+        saveSession();
+        queue = null;
+        releasePrepared(Set.of());
+        MediaPlayer current = player.get();
+        recordLeaving(current);
+        player.set(null);
+        currentSong.set(null);
+        playing = false;
+        if (current != null) dispose(current);
+    }
+
+    // Move the queue on the database thread, since random queues draw from the catalog
+    private void step(Function<PlayQueue, Integer> move) {
+        PlayQueue target = queue;
+        if (target == null) return;
+        long requested = System.nanoTime();
+
+        onFx(AsyncDb.supply(() -> {
+            Integer songId = move.apply(target);
+            Song song = songId == null ? null : playable(songId);
+            // Songs deleted or missing on disk since they were queued are skipped
+            for (int skipped = 0; song == null && songId != null && skipped < MAX_SKIPS; skipped++) {
+                songId = target.next();
+                song = songId == null ? null : playable(songId);
+            }
+            return song == null ? null : new Track(song, Math.pow(10, DbFinder.findTrackGainDb(song.fileName()) / 20));
+        }), track -> {
+            if (target == queue && track != null) start(track, requested);
+        });
+    }
+
+    // The song if it still exists and its file is on disk; runs on the database thread
+    private Song playable(int songId) {
+        Song song = DbFinder.searchSong(songId);
+        if (song == null || !new File(song.fileName()).exists()) return null;
+        return song;
+    }
+
+    private void start(Track track, long requested) {
+        Song song = track.song();
+        MediaPlayer next = prepared.remove(song.id());
+        if (next == null) next = create(song);
+        if (next == null) return;
+
+        MediaPlayer previous = player.get();
+        attach(next, song, track.gain(), requested);
+
+        recordLeaving(previous);
+        currentSong.set(song);
+        player.set(next);
+        if (previous != null) dispose(previous);
+
+        tracksStarted++;
+        next.play();
+        PlayHistory.record(song.id(), PlayHistory.Kind.START, 0);
+        preloadUpcoming();
+        saveSession();
+    }
+
+    /**
+     * Volume, end of track, and the status and position listeners of a player about to be current.
+     * gain is the track's loudness gain on top of the user's volume; never above 1, so never louder.
+     * requested is when the switch was asked for, or 0 when the start is not a timed switch.
+     */
+    private void attach(MediaPlayer next, Song song, double gain, long requested) {
+        next.volumeProperty().bind(volume.multiply(gain));
+        next.setOnEndOfMedia(() -> {
+            currentFinished = true;
+            PlayHistory.record(song.id(), PlayHistory.Kind.FINISH, (long) next.getCurrentTime().toMillis());
+            next();
+        });
+        // Only the first PLAYING ends the switch; stalls, seeks and resumes later are not switches
+        boolean[] timed = {requested == 0};
+        next.statusProperty().addListener((obs, oldStatus, newStatus) -> {
+            if (player.get() == next) playing = newStatus == MediaPlayer.Status.PLAYING;
+            if (!timed[0] && newStatus == MediaPlayer.Status.PLAYING) {
+                timed[0] = true;
+                switchLatency.recordSince(requested);
+            }
+        });
+        next.currentTimeProperty().addListener((obs, oldTime, newTime) -> {
+            if (player.get() == next && System.nanoTime() - lastSessionSave > SESSION_SAVE_NANOS) saveSession();
+        });
+    }
+
+    // Queue a snapshot of the session; the queue itself is read on the writer thread, since a
+    // queue drawing from the catalog may hold its lock for a database call
+    private void saveSession() {
+        MediaPlayer current = player.get();
+        if (current != null) saveSession(current.getCurrentTime());
+    }
+
+    private void saveSession(Duration at) {
+        PlayQueue target = queue;
+        Song song = currentSong.get();
+        if (target == null || song == null) return;
+
+        long position = (long) at.toMillis();
+        double level = volume.get();
+        long now = System.currentTimeMillis();
+        lastSessionSave = System.nanoTime();
+        SessionStore.INSTANCE.save(() -> new SessionStore.Session(target.state(), song, position, level, now));
+    }
+
+    // A track left before its end was skipped; only queues the event, so it costs the switch nothing
+    private void recordLeaving(MediaPlayer current) {
+        Song leaving = currentSong.get();
+        if (leaving != null && current != null && !currentFinished) {
+            PlayHistory.record(leaving.id(), PlayHistory.Kind.SKIP, (long) current.getCurrentTime().toMillis());
+        }
+        currentFinished = false;
+    }
+
+    // Look up the next tracks in the background, then let their players buffer
+    private void preloadUpcoming() {
+        PlayQueue target = queue;
+        if (target == null) return;
+
+        onFx(AsyncDb.supply(() -> {
+            List<Song> upcoming = new ArrayList<>();
+            for (int ahead = 1; ahead <= PRELOAD_AHEAD; ahead++) {
+                Integer songId = target.peek(ahead);
+                if (songId == null) break;
+                Song song = playable(songId);
+                if (song == null) continue;
+                upcoming.add(song);
+                // Decoded while the track is still ahead, so its seek bar is ready when it starts
+                WaveformCache.INSTANCE.request(song);
+            }
+            return upcoming;
+        }), upcoming -> {
+            if (target != queue) return;
+
+            Set<Integer> keep = new HashSet<>();
+            upcoming.forEach(song -> keep.add(song.id()));
+            releasePrepared(keep);
+
+            for (Song song : upcoming) {
+                if (prepared.containsKey(song.id())) continue;
+                MediaPlayer preloaded = create(song);
+                if (preloaded != null) prepared.put(song.id(), preloaded);
+            }
+        });
+    }
+
+    private MediaPlayer create(Song song) {
+        try {
+            MediaPlayer created = new MediaPlayer(new Media(new File(song.fileName()).toURI().toString()));
+            playersCreated++;
+            return created;
+        } catch (MediaException e) {
+            System.err.println("❌ Failed to load media for " + song.title() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void dispose(MediaPlayer old) {
+        old.setOnEndOfMedia(null);
+        old.volumeProperty().unbind();
+        old.stop();
+        old.dispose();
+        playersDisposed++;
+    }
+
+    // Dispose preloaded players whose song is not in keep
+    private void releasePrepared(Set<Integer> keep) {
+        Iterator<Map.Entry<Integer, MediaPlayer>> it = prepared.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Integer, MediaPlayer> entry = it.next();
+            if (keep.contains(entry.getKey())) continue;
+            dispose(entry.getValue());
+            it.remove();
+        }
+    }
+
+    private static <T> void onFx(CompletableFuture<T> future, Consumer<T> onSuccess) {
+        future.whenComplete((value, error) -> {
+            if (error != null) {
+                System.err.println("❌ Playback lookup failed: " + error.getMessage());
+                return;
+            }
+            Platform.runLater(() -> onSuccess.accept(value));
+        });
+    }
+}
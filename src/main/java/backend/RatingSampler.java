@@ -0,0 +1,305 @@
+package backend;
+
+import database.CatalogChange;
+import database.DbAssist;
+import database.DbFinder;
+import database.Song;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Draws songs from the whole catalog with a chance proportional to 2^rating, so every star
+ * doubles how often a song comes up. Songs sit in blocks of {@link #BLOCK_SIZE} slots, each with
+ * its own alias table (Vose), plus one alias table over the block totals. A draw is two O(1)
+ * table lookups and allocates nothing; a rating change only rebuilds its block and the small top
+ * table, and several changes are folded into one rebuild at the next draw. Writes made through
+ * {@link DbAssist} are applied in the order they are committed, on a background thread so the
+ * writer is not held up; a full reload rebuilds there too, drawing from the old table meanwhile.
+ */
+public class RatingSampler {
+
+    public static final RatingSampler CATALOG = new RatingSampler();
+
+    private static final int BLOCK_SIZE = 4096;
+    private static final double MAX_RATING = 5;
+
+    private final Object buildLock = new Object();
+    private final AtomicBoolean listening = new AtomicBoolean();
+    private final AtomicBoolean rebuildQueued = new AtomicBoolean();
+    private final ThreadPoolExecutor updater = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "rating-sampler");
+                thread.setDaemon(true);
+                return thread;
+            });
+    private final List<CatalogChange> changesDuringBuild = new ArrayList<>();
+    private boolean building;
+    private Table table;
+
+    private RatingSampler() {
+        updater.allowCoreThreadTimeOut(true);
+    }
+
+    // Build from the songs table and follow later writes; safe to call again to rebuild
+    public void load() {
+        if (listening.compareAndSet(false, true)) {
+            DbAssist.addChangeListener(this::applyLater);
+        }
+        rebuild();
+    }
+
+    // Load on first use; reads the whole catalog, so call it off the JavaFX thread
+    public void ensureLoaded() {
+        synchronized (buildLock) {
+            if (!isReady()) load();
+        }
+    }
+
+    public synchronized boolean isReady() {
+        return table != null;
+    }
+
+    public synchronized int size() {
+        return table == null ? 0 : table.live;
+    }
+
+    // A song id, or -1 when nothing is loaded or every song has been removed
+    public synchronized int draw() {
+        return table == null ? -1 : table.draw(ThreadLocalRandom.current());
+    }
+
+    static float weight(double rating) {
+        return (float) Math.pow(2, Math.max(0, Math.min(MAX_RATING, rating)));
+    }
+
+    private void rebuild() {
+        synchronized (buildLock) {
+            synchronized (this) {
+                building = true;
+            }
+
+            long start = System.nanoTime();
+            Table fresh = new Table();
+            boolean complete = DbFinder.scanRatings((songId, rating) -> fresh.put(songId, weight(rating)));
+            fresh.refresh();
+
+            List<CatalogChange> missed;
+            synchronized (this) {
+                if (complete || table == null) table = fresh;
+                building = false;
+                missed = new ArrayList<>(changesDuringBuild);
+                changesDuringBuild.clear();
+            }
+
+            System.out.println("⭐ Rating sampler: %d songs in %d blocks (%.0f ms)"
+                    .formatted(fresh.live, fresh.blockCount(), (System.nanoTime() - start) / 1_000_000.0));
+            missed.forEach(this::apply);
+        }
+    }
+
+    // Any number of reloads waiting at once share one rebuild, which reads every change before it
+    private void applyLater(CatalogChange change) {
+        if (change.reloadAll() && !rebuildQueued.compareAndSet(false, true)) return;
+        updater.execute(() -> {
+            if (change.reloadAll()) rebuildQueued.set(false);
+            apply(change);
+        });
+    }
+
+    private void apply(CatalogChange change) {
+        if (change.reloadAll()) {
+            rebuild();
+            return;
+        }
+
+        List<Song> songs = change.upserted().isEmpty() ? List.of() : DbFinder.searchSongs(change.upserted());
+
+        synchronized (this) {
+            if (building) {
+                changesDuringBuild.add(change);
+                return;
+            }
+            if (table == null) return;
+
+            change.deleted().forEach(table::remove);
+            for (Song song : songs) {
+                table.put(song.id(), weight(song.rating()));
+            }
+        }
+    }
+
+    /**
+     * Slot arrays in blocks. Removed songs keep their slot at weight 0 until an insert reuses it,
+     * so the other songs of a block never move.
+     */
+    private static final class Table {
+        private int[] ids = new int[BLOCK_SIZE];
+        private float[] weights = new float[BLOCK_SIZE];
+        private float[] prob = new float[BLOCK_SIZE];
+        private short[] alias = new short[BLOCK_SIZE];
+        private int[] slotById = new int[0];
+        private int[] freeSlots = new int[16];
+        private int freeCount;
+        private int size;
+        private int live;
+
+        private double[] blockTotals = new double[1];
+        private float[] topProb = new float[0];
+        private int[] topAlias = new int[0];
+        private double total;
+
+        private final BitSet dirtyBlocks = new BitSet();
+        private final int[] scratchAlias = new int[BLOCK_SIZE];
+
+        void put(int songId, float weight) {
+            int slot = slotOf(songId);
+            if (slot < 0) {
+                slot = freeCount > 0 ? freeSlots[--freeCount] : append();
+                if (songId >= slotById.length) {
+                    int old = slotById.length;
+                    slotById = Arrays.copyOf(slotById, Math.max(songId + 1, old * 2));
+                    Arrays.fill(slotById, old, slotById.length, -1);
+                }
+                slotById[songId] = slot;
+                ids[slot] = songId;
+                live++;
+            }
+            weights[slot] = weight;
+            dirtyBlocks.set(slot / BLOCK_SIZE);
+        }
+
+        void remove(int songId) {
+            int slot = slotOf(songId);
+            if (slot < 0) return;
+
+            slotById[songId] = -1;
+            weights[slot] = 0;
+            live--;
+            if (freeCount == freeSlots.length) freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+            freeSlots[freeCount++] = slot;
+            dirtyBlocks.set(slot / BLOCK_SIZE);
+        }
+
+        int draw(ThreadLocalRandom random) {
+            refresh();
+            if (total <= 0) return -1;
+
+            int block = pick(random, topProb, topAlias, 0, blockCount());
+            int offset = block * BLOCK_SIZE;
+            int local = random.nextInt(blockLength(block));
+            int slot = offset + local;
+            return ids[random.nextFloat() < prob[slot] ? slot : offset + alias[slot]];
+        }
+
+        // Rebuild the blocks touched since the last draw, then the table over the block totals
+        void refresh() {
+            if (dirtyBlocks.isEmpty()) return;
+
+            for (int block = dirtyBlocks.nextSetBit(0); block >= 0; block = dirtyBlocks.nextSetBit(block + 1)) {
+                int offset = block * BLOCK_SIZE;
+                int length = blockLength(block);
+                blockTotals[block] = buildAlias(weights, offset, length, prob, scratchAlias);
+                for (int i = 0; i < length; i++) {
+                    alias[offset + i] = (short) scratchAlias[i];
+                }
+            }
+            dirtyBlocks.clear();
+
+            int blocks = blockCount();
+            float[] blockWeights = new float[blocks];
+            total = 0;
+            for (int block = 0; block < blocks; block++) {
+                blockWeights[block] = (float) blockTotals[block];
+                total += blockTotals[block];
+            }
+            topProb = new float[blocks];
+            topAlias = new int[blocks];
+            buildAlias(blockWeights, 0, blocks, topProb, topAlias);
+        }
+
+        int blockCount() {
+            return (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        }
+
+        private int blockLength(int block) {
+            return Math.min(BLOCK_SIZE, size - block * BLOCK_SIZE);
+        }
+
+        private int slotOf(int songId) {
+            return songId >= 0 && songId < slotById.length ? slotById[songId] : -1;
+        }
+
+        private int append() {
+            if (size == ids.length) {
+                int capacity = ids.length * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                weights = Arrays.copyOf(weights, capacity);
+                prob = Arrays.copyOf(prob, capacity);
+                alias = Arrays.copyOf(alias, capacity);
+            }
+            int block = size / BLOCK_SIZE;
+            if (block >= blockTotals.length) blockTotals = Arrays.copyOf(blockTotals, blockTotals.length * 2);
+            return size++;
+        }
+
+        private static int pick(ThreadLocalRandom random, float[] prob, int[] alias, int offset, int length) {
+            int slot = offset + random.nextInt(length);
+            return random.nextFloat() < prob[slot] ? slot : offset + alias[slot];
+        }
+    }
+
+    /**
+     * Vose's alias method over weights[offset, offset + length): slot i keeps itself with chance
+     * prob[offset + i] and otherwise yields aliasOut[i]. Zero weights get chance 0 and always
+     * alias to a slot with weight. Returns the sum of the weights.
+     */
+    private static double buildAlias(float[] weights, int offset, int length, float[] prob, int[] aliasOut) {
+        double total = 0;
+        for (int i = 0; i < length; i++) {
+            total += weights[offset + i];
+        }
+
+        int[] small = new int[length];
+        int[] large = new int[length];
+        double[] scaled = new double[length];
+        int smallCount = 0, largeCount = 0;
+        for (int i = 0; i < length; i++) {
+            scaled[i] = total > 0 ? weights[offset + i] * length / total : 0;
+            if (scaled[i] < 1) small[smallCount++] = i;
+            else large[largeCount++] = i;
+        }
+
+        int lastLarge = 0;
+        while (smallCount > 0 && largeCount > 0) {
+            int less = small[--smallCount];
+            int more = large[--largeCount];
+            prob[offset + less] = (float) scaled[less];
+            aliasOut[less] = more;
+            lastLarge = more;
+
+            scaled[more] += scaled[less] - 1;
+            if (scaled[more] < 1) small[smallCount++] = more;
+            else large[largeCount++] = more;
+        }
+        while (largeCount > 0) {
+            int more = large[--largeCount];
+            prob[offset + more] = 1;
+            aliasOut[more] = more;
+        }
+        // Left over only through rounding; a weightless slot must still never be returned
+        while (smallCount > 0) {
+            int less = small[--smallCount];
+            prob[offset + less] = weights[offset + less] > 0 ? 1 : 0;
+            aliasOut[less] = weights[offset + less] > 0 ? less : lastLarge;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,270 @@
+package backend;
+
+import database.AsyncDb;
+import database.CatalogChange;
+import database.DbAssist;
+import database.DbFinder;
+import database.Song;
+import database.SongPage;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Search-as-you-type on top of {@link AsyncDb#searchSongsPage}. Keystrokes are debounced, a query
+ * superseded by newer text is cancelled, and the first page of recent queries is kept in a small
+ * LRU. When a cached page holds every match of a shorter query ("bel"), a refined query ("beli")
+ * is answered by filtering and re-ranking that page in memory instead of asking SQLite again.
+ * When the full-text search finds only a handful of songs, close misspellings from
+ * {@link FuzzyIndex} are appended after them. Any catalog write empties the cache.
+ */
+public class SearchPipeline {
+
+    public record Result(String query, SongPage page, boolean fromCache) {}
+
+    private static final int CACHE_ENTRIES = 64;
+    private static final int FUZZY_BELOW = 10;
+    private static final long CACHE_TTL_NANOS = TimeUnit.SECONDS.toNanos(30);
+    private static final Pattern TOKEN_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "search-debounce");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // exact holds only full-text matches and is what refinement filters; shown adds fuzzy matches
+    private record CachedPage(SongPage exact, SongPage shown, long storedAt) {}
+
+    private final int pageSize;
+    private final long debounceMillis;
+    private final Executor uiExecutor;
+    private final Consumer<Result> onResult;
+
+    private final CatalogChange.Listener catalogListener = change -> invalidate();
+    private final LatencyRecorder latency = new LatencyRecorder("Search keystroke-to-render", 1024);
+    private final Map<String, CachedPage> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedPage> eldest) {
+            return size() > CACHE_ENTRIES;
+        }
+    };
+
+    private long generation;
+    private ScheduledFuture<?> pending;
+    private CompletableFuture<SongPage> inFlight;
+
+    private long exactHits;
+    private long refinedHits;
+    private long queries;
+    private long superseded;
+    private long fuzzyAdded;
+
+    /**
+     * @param uiExecutor where results are delivered, e.g. {@code Platform::runLater}
+     */
+    public SearchPipeline(int pageSize, long debounceMillis, Executor uiExecutor, Consumer<Result> onResult) {
+        this.pageSize = pageSize;
+        this.debounceMillis = debounceMillis;
+        this.uiExecutor = uiExecutor;
+        this.onResult = onResult;
+        DbAssist.addChangeListener(catalogListener);
+    }
+
+    // Call on every text change; answers from the cache right away, otherwise after the debounce
+    public synchronized void submit(String text) {
+        long keystroke = System.nanoTime();
+        long current = ++generation;
+        cancelPending();
+
+        String key = normalize(text);
+        if (tokens(key).isEmpty()) {
+            deliver(current, keystroke, new Result(text, new SongPage(List.of(), null), true));
+            return;
+        }
+
+        SongPage cached = lookup(key);
+        if (cached != null) {
+            deliver(current, keystroke, new Result(text, cached, true));
+            return;
+        }
+
+        pending = TIMER.schedule(() -> query(current, keystroke, text, key), debounceMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Drop cached pages, e.g. after the catalog has changed
+    public synchronized void invalidate() {
+        cache.clear();
+    }
+
+    public synchronized void close() {
+        DbAssist.removeChangeListener(catalogListener);
+        generation++;
+        cancelPending();
+        cache.clear();
+        System.out.println("📊 Search: %d queries, %d cache hits, %d refined in memory, %d superseded, %d fuzzy matches"
+                .formatted(queries, exactHits, refinedHits, superseded, fuzzyAdded));
+        System.out.println("📊 " + latency);
+    }
+
+    public LatencyRecorder latency() {
+        return latency;
+    }
+
+    private synchronized void query(long requested, long keystroke, String text, String key) {
+        if (requested != generation) return;
+
+        pending = null;
+        queries++;
+        CompletableFuture<SongPage> future = AsyncDb.searchSongsPage(text, null, pageSize);
+        inFlight = future;
+        future.whenComplete((page, error) -> {
+            if (error != null) {
+                if (!future.isCancelled()) System.err.println("❌ Search failed: " + error.getMessage());
+                return;
+            }
+            SongPage shown = withFuzzyMatches(text, page);
+            synchronized (this) {
+                if (inFlight == future) inFlight = null;
+                fuzzyAdded += shown.songs().size() - page.songs().size();
+                cache.put(key, new CachedPage(page, shown, System.nanoTime()));
+            }
+            deliver(requested, keystroke, new Result(text, shown, false));
+        });
+    }
+
+    // Runs on the database thread that completed the search, so the id lookup stays off the UI
+    private SongPage withFuzzyMatches(String text, SongPage page) {
+        if (page.hasMore() || page.songs().size() >= FUZZY_BELOW || !FuzzyIndex.CATALOG.isReady()) return page;
+
+        Set<Integer> seen = new HashSet<>();
+        page.songs().forEach(song -> seen.add(song.id()));
+        List<Integer> extra = new ArrayList<>();
+        for (FuzzyIndex.Match match : FuzzyIndex.CATALOG.search(text, pageSize)) {
+            if (seen.add(match.songId())) extra.add(match.songId());
+            if (page.songs().size() + extra.size() >= pageSize) break;
+        }
+        if (extra.isEmpty()) return page;
+
+        List<Song> songs = new ArrayList<>(page.songs());
+        songs.addAll(DbFinder.searchSongs(extra));
+        return new SongPage(songs, null);
+    }
+
+    private void deliver(long requested, long keystroke, Result result) {
+        uiExecutor.execute(() -> {
+            synchronized (this) {
+                if (requested != generation) return;
+            }
+            onResult.accept(result);
+            latency.recordSince(keystroke);
+        });
+    }
+
+    private void cancelPending() {
+        if (pending != null) {
+            pending.cancel(false);
+            pending = null;
+        }
+        if (inFlight != null) {
+            inFlight.cancel(true);
+            inFlight = null;
+            superseded++;
+        }
+    }
+
+    // Exact hit, or the longest fresh complete page of a query this one extends
+    private SongPage lookup(String key) {
+        long now = System.nanoTime();
+        cache.values().removeIf(entry -> now - entry.storedAt() > CACHE_TTL_NANOS);
+
+        CachedPage exact = cache.get(key);
+        if (exact != null) {
+            exactHits++;
+            return exact.shown();
+        }
+
+        String bestKey = null;
+        for (Map.Entry<String, CachedPage> entry : cache.entrySet()) {
+            String candidate = entry.getKey();
+            if (key.startsWith(candidate) && !entry.getValue().exact().hasMore()
+                    && (bestKey == null || candidate.length() > bestKey.length())) {
+                bestKey = candidate;
+            }
+        }
+        if (bestKey == null) return null;
+
+        // Extending the text only extends or adds prefix terms, so the matches can only shrink
+        SongPage refined = new SongPage(refine(cache.get(bestKey).exact().songs(), key), null);
+        // Too few exact matches: let the database path add the fuzzy ones
+        if (refined.songs().size() < FUZZY_BELOW && FuzzyIndex.CATALOG.isReady()) return null;
+
+        cache.put(key, new CachedPage(refined, refined, now));
+        refinedHits++;
+        return refined;
+    }
+
+    // The MATCH filter and ranking of DbFinder.searchSongsPage, applied to songs already in memory
+    private static List<Song> refine(List<Song> candidates, String key) {
+        List<String> terms = tokens(key);
+        List<Song> matches = new ArrayList<>();
+        for (Song song : candidates) {
+            List<String> words = new ArrayList<>();
+            for (String column : new String[]{song.title(), song.artist(), song.language(), song.genre()}) {
+                if (column != null) words.addAll(tokens(column));
+            }
+            if (terms.stream().allMatch(term -> words.stream().anyMatch(word -> word.startsWith(term)))) {
+                matches.add(song);
+            }
+        }
+
+        matches.sort(Comparator.<Song>comparingLong(song -> rank(song.title(), key))
+                .thenComparing(song -> asciiLower(song.title()))
+                .thenComparingInt(Song::id));
+        return matches;
+    }
+
+    // bucket * 1000000 + LENGTH(title), as computed in SQL; LOWER and LIKE only fold ASCII
+    private static long rank(String title, String key) {
+        String lower = asciiLower(title);
+        int bucket = lower.startsWith(key) ? 1 : lower.contains(" " + key) ? 2 : 3;
+        return bucket * 1_000_000L + title.codePointCount(0, title.length());
+    }
+
+    // Mirrors the unicode61 tokenizer: lower case, diacritics removed, split on non-alphanumerics
+    private static List<String> tokens(String text) {
+        String folded = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("").toLowerCase();
+        List<String> tokens = new ArrayList<>();
+        for (String token : TOKEN_SEPARATOR.split(folded)) {
+            if (!token.isEmpty()) tokens.add(token);
+        }
+        return tokens;
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.trim().toLowerCase();
+    }
+
+    private static String asciiLower(String text) {
+        char[] chars = text.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            if (chars[i] >= 'A' && chars[i] <= 'Z') chars[i] += 'a' - 'A';
+        }
+        return new String(chars);
+    }
+}
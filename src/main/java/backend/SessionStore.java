@@ -0,0 +1,162 @@
+package backend;
+
+import database.Song;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * The playback session on disk, so the next start can carry on where this one stopped. The
+ * snapshot is a small binary file: the queue as ints, the current song as it was shown, and the
+ * position and volume. Saves are debounced by {@link #DEBOUNCE_MILLIS}, and only the latest
+ * session is written, next to the final name and moved over it so a crash never leaves half a
+ * file. The current song is kept whole so it can be played again before the database is up.
+ */
+public class SessionStore {
+
+    public static final SessionStore INSTANCE = new SessionStore(Paths.get("data/session.bin"));
+
+    public record Session(PlayQueue.State queue, Song song, long positionMillis, double volume, long savedAtMillis) {}
+
+    private static final int MAGIC = 0x53455353; // "SESS"
+    private static final int VERSION = 2;
+    private static final long DEBOUNCE_MILLIS = 1000;
+
+    private final Path file;
+    private final AtomicReference<Supplier<Session>> latest = new AtomicReference<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final ScheduledThreadPoolExecutor writer = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "session-store");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private SessionStore(Path file) {
+        this.file = file;
+        writer.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    // The saved session, or null when there is none or it cannot be read
+    public Session load() {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) return null;
+
+            long savedAt = in.readLong();
+            PlayQueue.Mode mode = PlayQueue.Mode.values()[in.readByte()];
+            int cursor = in.readInt();
+            List<Integer> swaps = readIds(in);
+            int position = in.readInt();
+            List<Integer> history = readIds(in);
+            List<Integer> playlist = readIds(in);
+            long positionMillis = in.readLong();
+            double volume = in.readDouble();
+            Song song = new Song(in.readInt(), in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF(), in.readFloat(), in.readUTF());
+            return new Session(new PlayQueue.State(mode, playlist, cursor, swaps, history, position), song, positionMillis, volume, savedAt);
+
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (EOFException e) {
+            System.err.println("⚠️ The saved session is incomplete; starting without it");
+            return null;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("⚠️ Could not restore the last session: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Write the session within DEBOUNCE_MILLIS, unless a newer one replaces it first; never
+     * blocks. The supplier runs on the writer thread, so it may wait on a busy queue.
+     */
+    public void save(Supplier<Session> session) {
+        latest.set(session);
+        if (!scheduled.compareAndSet(false, true)) return;
+        try {
+            writer.schedule(this::writeLatest, DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Closed; close() has written what it had
+            scheduled.set(false);
+        }
+    }
+
+    // Write a pending save now and stop the writer; call when the application exits
+    public void close() {
+        writer.shutdown();
+        writeLatest();
+    }
+
+    private synchronized void writeLatest() {
+        scheduled.set(false);
+        Supplier<Session> pending = latest.getAndSet(null);
+        Session session = pending == null ? null : pending.get();
+        if (session == null) return;
+
+        try {
+            Files.createDirectories(file.getParent());
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                write(out, session);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("⚠️ Could not save the playback session: " + e.getMessage());
+        }
+    }
+
+    private static void write(DataOutputStream out, Session session) throws IOException {
+        PlayQueue.State queue = session.queue();
+        Song song = session.song();
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(session.savedAtMillis());
+        out.writeByte(queue.mode().ordinal());
+        out.writeInt(queue.cursor());
+        writeIds(out, queue.swaps());
+        out.writeInt(queue.position());
+        writeIds(out, queue.history());
+        writeIds(out, queue.playlist());
+        out.writeLong(session.positionMillis());
+        out.writeDouble(session.volume());
+        out.writeInt(song.id());
+        out.writeUTF(text(song.title()));
+        out.writeUTF(text(song.artist()));
+        out.writeUTF(text(song.language()));
+        out.writeUTF(text(song.genre()));
+        out.writeFloat(song.rating());
+        out.writeUTF(text(song.fileName()));
+    }
+
+    private static String text(String value) {
+        return value == null ? "" : value;
+    }
+
+    private static void writeIds(DataOutputStream out, List<Integer> ids) throws IOException {
+        out.writeInt(ids.size());
+        for (int id : ids) out.writeInt(id);
+    }
+
+    private static List<Integer> readIds(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        if (size < 0) throw new IOException("bad list length " + size);
+        List<Integer> ids = new ArrayList<>(Math.min(size, 1 << 16));
+        for (int i = 0; i < size; i++) ids.add(in.readInt());
+        return ids;
+    }
+}
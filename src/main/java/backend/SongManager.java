@@ -1,9 +1,7 @@
 package backend;
 
-import database.DbManager;
+import database.DbFinder;
 
-import java.sql.*;
-import java.util.ArrayList;
 import java.util.List;
 
 public class SongManager {
@@ -16,45 +14,9 @@ public class SongManager {
      * @return List of matching song IDs
      */
     public static List<Integer> getSongsByCategory(String category, String name) {
-        List<Integer> songIds = new ArrayList<>();
-
-        String joinTable = switch (category.toLowerCase()) {
-            case "artist" -> "artists";
-            case "language" -> "languages";
-            case "genre" -> "genres";
-            default -> null;
-        };
-
-        String column = switch (category.toLowerCase()) {
-            case "artist" -> "artist_id";
-            case "language" -> "language_id";
-            case "genre" -> "genre_id";
-            default -> null;
+        return switch (category.toLowerCase()) {
+            case "artist", "language", "genre" -> DbFinder.findSongsByCategory(category, name);
+            default -> List.of();
         };
-
-        if (joinTable == null || column == null) return songIds;
-
-        String sql = """
-            SELECT s.id
-            FROM songs s
-            JOIN %s t ON s.%s = t.id
-            WHERE LOWER(t.name) = ?
-        """.formatted(joinTable, column);
-
-        try (Connection conn = DbManager.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-
-            stmt.setString(1, name.toLowerCase());
-            ResultSet rs = stmt.executeQuery();
-
-            while (rs.next()) {
-                songIds.add(rs.getInt("id"));
-            }
-
-        } catch (SQLException e) {
-            System.err.println("❌ Error fetching songs by %s: %s".formatted(category, e.getMessage()));
-        }
-
-        return songIds;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,32 @@
+package backend;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Min/max peaks of one track in a fixed number of columns, each a signed byte of the loudest
+ * channel. Loaded from {@link WaveformCache}, where the buffer is a view of the memory-mapped
+ * sidecar file, so nothing is copied.
+ */
+public final class Waveform {
+
+    // min and max of each column, interleaved
+    private final ByteBuffer peaks;
+
+    Waveform(ByteBuffer peaks) {
+        this.peaks = peaks;
+    }
+
+    public int columns() {
+        return peaks.limit() / 2;
+    }
+
+    // -128 to 0
+    public int min(int column) {
+        return peaks.get(2 * column);
+    }
+
+    // 0 to 127
+    public int max(int column) {
+        return peaks.get(2 * column + 1);
+    }
+}
@@ -0,0 +1,269 @@
+package backend;
+
+import database.DbAssist;
+import database.DbFinder;
+import database.PageKey;
+import database.Song;
+import database.SongPage;
+import javazoom.jl.decoder.JavaLayerException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Waveform peaks for the player's seek bar. Each track is decoded once ({@link PcmDecoder}) into
+ * {@link #COLUMNS} min/max pairs and written to a small sidecar file named after the song id,
+ * whose header records the audio file's size and mtime; a changed file simply gets new peaks.
+ * {@link #load} maps the sidecar and returns a view of it, so a warm load is one stat and one
+ * mmap and never decodes. Decoding runs on one thread per core, with tracks the player asks for
+ * ahead of the background batch. The batch is fed in a few songs at a time, on at most half the
+ * cores, and waits while something is playing, so a requested track never queues behind it.
+ */
+public class WaveformCache {
+
+    public static final WaveformCache INSTANCE = new WaveformCache(Paths.get("data/waveforms"));
+
+    public static final int COLUMNS = 1000;
+
+    private static final int MAGIC = 0x57415650; // "WAVP"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 32;
+    private static final int PAGE_SIZE = 1000;
+    private static final int URGENT = 0;
+    private static final int BATCH = 1;
+    private static final int BATCH_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    private static final long IDLE_POLL_MILLIS = 1000;
+
+    private final Path directory;
+    private final Map<Integer, Job> jobs = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicBoolean listening = new AtomicBoolean();
+    private final AtomicBoolean generating = new AtomicBoolean();
+    private final ThreadPoolExecutor decoders;
+
+    private WaveformCache(Path directory) {
+        this.directory = directory;
+        int threads = Runtime.getRuntime().availableProcessors();
+        decoders = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new PriorityBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "waveform");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        decoders.allowCoreThreadTimeOut(true);
+    }
+
+    // The stored peaks if they match the song's file as it is now, else null; never decodes
+    public Waveform load(Song song) {
+        Path sidecar = sidecar(song.id());
+        try (FileChannel channel = FileChannel.open(sidecar, StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length < HEADER_BYTES) return null;
+
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            BasicFileAttributes audio = Files.readAttributes(Paths.get(song.fileName()), BasicFileAttributes.class);
+            if (mapped.getInt(0) != MAGIC || mapped.getInt(4) != VERSION
+                    || mapped.getLong(8) != audio.lastModifiedTime().toMillis() || mapped.getLong(16) != audio.size()
+                    || mapped.getInt(24) != song.fileName().hashCode()) {
+                return null;
+            }
+            int columns = mapped.getInt(28);
+            if (HEADER_BYTES + 2L * columns != length) return null;
+            return new Waveform(mapped.slice(HEADER_BYTES, 2 * columns));
+
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            System.err.println("⚠️ Could not load waveform of " + song.title() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Peaks for a song about to be shown: right away when stored, else decoded before any batch work
+    public CompletableFuture<Waveform> request(Song song) {
+        Waveform stored = load(song);
+        return stored != null ? CompletableFuture.completedFuture(stored) : schedule(song, URGENT);
+    }
+
+    /**
+     * Generate peaks for every song in the catalog whose file has none, in the background; returns
+     * at once, and does nothing while an earlier call is still going.
+     */
+    public void generateCatalog() {
+        listenForDeletes();
+        if (!generating.compareAndSet(false, true)) return;
+
+        Thread thread = new Thread(() -> {
+            try {
+                feedCatalog();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                generating.set(false);
+            }
+        }, "waveform-batch");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    // Read the catalog page by page and keep at most BATCH_THREADS of its songs queued or decoding
+    private void feedCatalog() throws InterruptedException {
+        long start = System.nanoTime();
+        Semaphore slots = new Semaphore(BATCH_THREADS);
+        int generated = 0;
+        PageKey after = null;
+        do {
+            SongPage page = DbFinder.getSongsPage(after, PAGE_SIZE);
+            for (Song song : page.songs()) {
+                if (!Files.exists(Paths.get(song.fileName())) || load(song) != null) continue;
+
+                while (PlaybackEngine.INSTANCE.isPlaying()) Thread.sleep(IDLE_POLL_MILLIS);
+                slots.acquire();
+                schedule(song, BATCH).whenComplete((waveform, error) -> slots.release());
+                generated++;
+            }
+            after = page.next();
+        } while (after != null);
+
+        slots.acquire(BATCH_THREADS);
+        if (generated > 0) {
+            System.out.println("🌊 Generated waveforms for " + generated + " songs in "
+                    + (System.nanoTime() - start) / 1_000_000 + " ms");
+        }
+    }
+
+    private CompletableFuture<Waveform> schedule(Song song, int priority) {
+        Job job = new Job(song, priority, sequence.incrementAndGet());
+        Job existing = jobs.putIfAbsent(song.id(), job);
+        if (existing == null) {
+            decoders.execute(job);
+            return job.result;
+        }
+
+        // Move a queued batch job to the front; one already decoding just runs to the end
+        if (priority == URGENT && existing.priority == BATCH && decoders.remove(existing)) {
+            Job promoted = new Job(song, URGENT, sequence.incrementAndGet());
+            promoted.result = existing.result;
+            jobs.put(song.id(), promoted);
+            decoders.execute(promoted);
+        }
+        return existing.result;
+    }
+
+    private void listenForDeletes() {
+        if (!listening.compareAndSet(false, true)) return;
+        DbAssist.addChangeListener(change -> change.deleted().forEach(id -> {
+            try {
+                Files.deleteIfExists(sidecar(id));
+            } catch (IOException e) {
+                System.err.println("⚠️ Could not remove waveform " + id + ": " + e.getMessage());
+            }
+        }));
+    }
+
+    private Path sidecar(int songId) {
+        return directory.resolve(songId + ".peaks");
+    }
+
+    // Decode the whole track into peaks and store them; null when the file cannot be decoded
+    private Waveform decode(Song song) {
+        Path audio = Paths.get(song.fileName());
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(audio, BasicFileAttributes.class);
+            AudioMetadata meta = AudioMetadata.read(audio);
+            if (meta == null) return null;
+
+            // Samples per channel, from the header; later samples are folded into the last column
+            long totalSamples = Math.max(1, meta.durationMillis() * meta.sampleRate() / 1000);
+            byte[] peaks = new byte[2 * COLUMNS];
+            long[] sample = {0};
+            PcmDecoder.decode(audio, (buffer, length, channels, sampleRate) -> {
+                for (int i = 0; i + channels <= length; i += channels, sample[0]++) {
+                    int column = (int) Math.min(COLUMNS - 1, sample[0] * COLUMNS / totalSamples);
+                    for (int c = 0; c < channels; c++) {
+                        byte value = (byte) (buffer[i + c] >> 8);
+                        if (value < peaks[2 * column]) peaks[2 * column] = value;
+                        if (value > peaks[2 * column + 1]) peaks[2 * column + 1] = value;
+                    }
+                }
+            });
+
+            store(song, attrs, peaks);
+            return new Waveform(ByteBuffer.wrap(peaks));
+
+        } catch (IOException | JavaLayerException e) {
+            System.err.println("❌ Could not decode " + song.title() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Written next to the final name and moved over it, so a reader never sees half a file
+    private void store(Song song, BasicFileAttributes attrs, byte[] peaks) throws IOException {
+        ByteBuffer file = ByteBuffer.allocate(HEADER_BYTES + peaks.length)
+                .putInt(MAGIC)
+                .putInt(VERSION)
+                .putLong(attrs.lastModifiedTime().toMillis())
+                .putLong(attrs.size())
+                .putInt(song.fileName().hashCode())
+                .putInt(peaks.length / 2)
+                .put(peaks);
+
+        Files.createDirectories(directory);
+        Path target = sidecar(song.id());
+        Path temp = directory.resolve(song.id() + ".peaks.tmp");
+        Files.write(temp, file.array());
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * One decode. Urgent jobs run before batch jobs, each group in the order it was queued;
+     * the queue orders by this, so a job is never submitted through a wrapping FutureTask.
+     */
+    private final class Job implements Runnable, Comparable<Job> {
+        private final Song song;
+        private final int priority;
+        private final long order;
+        private CompletableFuture<Waveform> result = new CompletableFuture<>();
+
+        Job(Song song, int priority, long order) {
+            this.song = song;
+            this.priority = priority;
+            this.order = order;
+        }
+
+        @Override
+        public void run() {
+            try {
+                result.complete(decode(song));
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            } finally {
+                jobs.remove(song.id(), this);
+            }
+        }
+
+        @Override
+        public int compareTo(Job other) {
+            return priority != other.priority ? Integer.compare(priority, other.priority) : Long.compare(order, other.order);
+        }
+    }
+}
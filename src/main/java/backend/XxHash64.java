@@ -0,0 +1,102 @@
+package backend;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Streaming XXH64 (seed 0). Input can arrive in pieces of any size, e.g. one memory-mapped region
+ * of a file after another; whole 32-byte stripes are read straight from the buffer as
+ * little-endian longs, so hashing runs at memory speed.
+ */
+final class XxHash64 {
+
+    private static final long P1 = 0x9E3779B185EBCA87L;
+    private static final long P2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long P3 = 0x165667B19E3779F9L;
+    private static final long P4 = 0x85EBCA77C2B2AE63L;
+    private static final long P5 = 0x27D4EB2F165667C5L;
+
+    private long v1 = P1 + P2;
+    private long v2 = P2;
+    private long v3 = 0;
+    private long v4 = -P1;
+    private long length;
+
+    // Bytes left over from the previous update, less than one stripe
+    private final ByteBuffer pending = ByteBuffer.allocate(32).order(ByteOrder.LITTLE_ENDIAN);
+
+    // Consumes everything between the buffer's position and limit
+    void update(ByteBuffer input) {
+        ByteBuffer in = input.slice().order(ByteOrder.LITTLE_ENDIAN);
+        length += in.remaining();
+
+        if (pending.position() > 0) {
+            while (pending.hasRemaining() && in.hasRemaining()) pending.put(in.get());
+            if (pending.hasRemaining()) return;
+            pending.flip();
+            stripe(pending, 0);
+            pending.clear();
+        }
+
+        int pos = in.position();
+        int limit = in.limit();
+        for (; pos + 32 <= limit; pos += 32) {
+            stripe(in, pos);
+        }
+        pending.put(in.position(pos));
+        input.position(input.limit());
+    }
+
+    long digest() {
+        long hash;
+        if (length >= 32) {
+            hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            hash = mergeRound(hash, v1);
+            hash = mergeRound(hash, v2);
+            hash = mergeRound(hash, v3);
+            hash = mergeRound(hash, v4);
+        } else {
+            hash = P5;
+        }
+        hash += length;
+
+        ByteBuffer tail = pending.duplicate().flip().order(ByteOrder.LITTLE_ENDIAN);
+        while (tail.remaining() >= 8) {
+            hash ^= round(0, tail.getLong());
+            hash = Long.rotateLeft(hash, 27) * P1 + P4;
+        }
+        if (tail.remaining() >= 4) {
+            hash ^= (tail.getInt() & 0xFFFFFFFFL) * P1;
+            hash = Long.rotateLeft(hash, 23) * P2 + P3;
+        }
+        while (tail.hasRemaining()) {
+            hash ^= (tail.get() & 0xFFL) * P5;
+            hash = Long.rotateLeft(hash, 11) * P1;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= P2;
+        hash ^= hash >>> 29;
+        hash *= P3;
+        hash ^= hash >>> 32;
+        return hash;
+    }
+
+    private void stripe(ByteBuffer in, int pos) {
+        v1 = round(v1, in.getLong(pos));
+        v2 = round(v2, in.getLong(pos + 8));
+        v3 = round(v3, in.getLong(pos + 16));
+        v4 = round(v4, in.getLong(pos + 24));
+    }
+
+    private static long round(long acc, long input) {
+        acc += input * P2;
+        acc = Long.rotateLeft(acc, 31);
+        return acc * P1;
+    }
+
+    private static long mergeRound(long acc, long value) {
+        acc ^= round(0, value);
+        return acc * P1 + P4;
+    }
+}
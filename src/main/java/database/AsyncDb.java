@@ -0,0 +1,227 @@
+package database;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Asynchronous facade over {@link DbFinder} and {@link DbAssist}. Work runs on a bounded pool
+ * (virtual threads on Java 21+, platform threads otherwise) and every call returns a
+ * CompletableFuture; cancelling it interrupts or skips the underlying task. Callers on the
+ * JavaFX thread hop back with {@code gui.FxAsync}.
+ */
+public class AsyncDb {
+
+    public record Stats(int queued, int running, long submitted, long completed, long failed,
+                        long cancelled, long rejected, double avgLatencyMillis, double maxLatencyMillis) {
+        @Override
+        public String toString() {
+            return "%d queued, %d running, %d submitted, %d completed, %d failed, %d cancelled, %d rejected, latency avg %.2f ms / max %.2f ms"
+                    .formatted(queued, running, submitted, completed, failed, cancelled, rejected, avgLatencyMillis, maxLatencyMillis);
+        }
+    }
+
+    private static final int WORKERS = Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
+    private static final int MAX_QUEUED = 256;
+
+    private static final ThreadPoolExecutor EXECUTOR = new ThreadPoolExecutor(
+            WORKERS, WORKERS, 30, TimeUnit.SECONDS, new ArrayBlockingQueue<>(MAX_QUEUED), threadFactory());
+
+    private static final LongAdder submitted = new LongAdder();
+    private static final LongAdder completed = new LongAdder();
+    private static final LongAdder failed = new LongAdder();
+    private static final LongAdder cancelled = new LongAdder();
+    private static final LongAdder rejected = new LongAdder();
+    private static final LongAdder totalLatencyNanos = new LongAdder();
+    private static final AtomicLong maxLatencyNanos = new AtomicLong();
+
+    // Every task waits for the schema to be ready before touching the database
+    private static volatile CompletableFuture<Void> schemaReady = CompletableFuture.completedFuture(null);
+
+    static {
+        EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    // Run DbManager.createSchemaIfNeeded in the background; later tasks queue behind it
+    public static synchronized CompletableFuture<Void> initializeSchema() {
+        CompletableFuture<Void> ready = new CompletableFuture<>();
+        schemaReady = ready;
+        run(() -> {
+            DbManager.createSchemaIfNeeded();
+            return null;
+        }, false).whenComplete((ignored, error) -> ready.complete(null));
+        return ready;
+    }
+
+    public static <T> CompletableFuture<T> supply(Callable<T> work) {
+        return run(work, true);
+    }
+
+    public static CompletableFuture<Song> searchSong(int id) {
+        return supply(() -> DbFinder.searchSong(id));
+    }
+
+    public static CompletableFuture<List<Song>> searchSongs(Collection<Integer> ids) {
+        List<Integer> copy = List.copyOf(ids);
+        return supply(() -> DbFinder.searchSongs(copy));
+    }
+
+    public static CompletableFuture<SongPage> getSongsPage(PageKey after, int limit) {
+        return supply(() -> DbFinder.getSongsPage(after, limit));
+    }
+
+    public static CompletableFuture<SongPage> findSongsByCategoryPage(String categoryType, String value, PageKey after, int limit) {
+        return supply(() -> DbFinder.findSongsByCategoryPage(categoryType, value, after, limit));
+    }
+
+    public static CompletableFuture<List<Integer>> findSongIdsByCategoryAfter(String categoryType, String value, PageKey after) {
+        return supply(() -> DbFinder.findSongIdsByCategoryAfter(categoryType, value, after));
+    }
+
+    public static CompletableFuture<SongPage> searchSongsPage(String query, PageKey after, int limit) {
+        return supply(() -> DbFinder.searchSongsPage(query, after, limit));
+    }
+
+    // "Artist", "Language" or "Genre", as used by the Explore screen
+    public static CompletableFuture<List<String>> getCategoryValues(String categoryType) {
+        return supply(() -> switch (categoryType.toLowerCase()) {
+            case "artist" -> DbFinder.getAllArtists();
+            case "language" -> DbFinder.getAllLanguages();
+            case "genre" -> DbFinder.getAllGenres();
+            default -> List.of();
+        });
+    }
+
+    public static CompletableFuture<Boolean> addSong(String title, String artist, String language, String genre, double rating, String fileName) {
+        return supply(() -> DbAssist.addSong(title, artist, language, genre, rating, fileName));
+    }
+
+    public static CompletableFuture<Boolean> updateSongById(int id, String title, String artist, String language, String genre, double rating) {
+        return supply(() -> DbAssist.updateSongById(id, title, artist, language, genre, rating));
+    }
+
+    public static CompletableFuture<Boolean> deleteSongById(int songId) {
+        return supply(() -> DbAssist.deleteSongById(songId));
+    }
+
+    public static CompletableFuture<Integer> deleteSongs(Collection<Integer> songIds) {
+        List<Integer> copy = List.copyOf(songIds);
+        return supply(() -> DbAssist.deleteSongs(copy));
+    }
+
+    public static CompletableFuture<Integer> updateSongs(Collection<Integer> songIds, String artist, String language, String genre, Double rating) {
+        List<Integer> copy = List.copyOf(songIds);
+        return supply(() -> DbAssist.updateSongs(copy, artist, language, genre, rating));
+    }
+
+    public static CompletableFuture<List<PlayHistory.SongPlays>> mostPlayedThisWeek(int limit) {
+        return supply(() -> PlayHistory.mostPlayedThisWeek(limit));
+    }
+
+    public static CompletableFuture<Integer> mergeSongs(int keepId, Collection<Integer> duplicateIds) {
+        List<Integer> copy = List.copyOf(duplicateIds);
+        return supply(() -> DbAssist.mergeSongs(keepId, copy));
+    }
+
+    public static CompletableFuture<Integer> importFromCSV(String path, int batchSize, CsvImporter.ProgressListener listener) {
+        return supply(() -> DbAssist.importFromCSV(path, batchSize, listener));
+    }
+
+    public static Stats stats() {
+        long done = completed.sum() + failed.sum();
+        return new Stats(
+                EXECUTOR.getQueue().size(),
+                EXECUTOR.getActiveCount(),
+                submitted.sum(),
+                completed.sum(),
+                failed.sum(),
+                cancelled.sum(),
+                rejected.sum(),
+                done == 0 ? 0 : totalLatencyNanos.sum() / 1_000_000.0 / done,
+                maxLatencyNanos.get() / 1_000_000.0
+        );
+    }
+
+    public static void shutdown() {
+        System.out.println("📊 Async DB: " + stats());
+        EXECUTOR.shutdown();
+        try {
+            EXECUTOR.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static <T> CompletableFuture<T> run(Callable<T> work, boolean afterSchema) {
+        AtomicReference<Future<?>> task = new AtomicReference<>();
+        CompletableFuture<T> result = new CompletableFuture<>() {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                boolean done = super.cancel(mayInterruptIfRunning);
+                if (!done) return false;
+
+                cancelled.increment();
+                Future<?> pending = task.get();
+                if (pending != null) {
+                    pending.cancel(mayInterruptIfRunning);
+                    // Free the queue slot right away instead of when a worker reaches it
+                    if (pending instanceof Runnable runnable) EXECUTOR.remove(runnable);
+                }
+                return true;
+            }
+        };
+
+        CompletableFuture<Void> ready = afterSchema ? schemaReady : null;
+        long submittedAt = System.nanoTime();
+        submitted.increment();
+
+        try {
+            task.set(EXECUTOR.submit(() -> {
+                if (result.isDone()) return;
+                try {
+                    if (ready != null) ready.join();
+                    T value = work.call();
+                    if (result.complete(value)) completed.increment();
+                } catch (Throwable e) {
+                    if (result.completeExceptionally(e)) failed.increment();
+                } finally {
+                    long latency = System.nanoTime() - submittedAt;
+                    totalLatencyNanos.add(latency);
+                    maxLatencyNanos.accumulateAndGet(latency, Math::max);
+                }
+            }));
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    // Virtual threads where the runtime has them (Java 21+), daemon platform threads otherwise
+    private static ThreadFactory threadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, "db-async-", 0L);
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger counter = new AtomicInteger();
+            return runnable -> {
+                Thread thread = new Thread(runnable, "db-async-" + counter.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            };
+        }
+    }
+}
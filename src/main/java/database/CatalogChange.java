@@ -0,0 +1,29 @@
+package database;
+
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * What a committed write did to the songs table. Listeners registered with
+ * {@link DbAssist#addChangeListener} receive one after every successful write, once the write
+ * connection has been released. {@code reloadAll} means the change is too large to describe
+ * (e.g. a CSV import) and anything derived from the catalog should be rebuilt.
+ */
+public record CatalogChange(Set<Integer> upserted, Set<Integer> deleted, boolean reloadAll) {
+
+    public interface Listener {
+        void catalogChanged(CatalogChange change);
+    }
+
+    public static CatalogChange upserted(Collection<Integer> ids) {
+        return new CatalogChange(Set.copyOf(ids), Set.of(), false);
+    }
+
+    public static CatalogChange deleted(Collection<Integer> ids) {
+        return new CatalogChange(Set.of(), Set.copyOf(ids), false);
+    }
+
+    public static CatalogChange reload() {
+        return new CatalogChange(Set.of(), Set.of(), true);
+    }
+}
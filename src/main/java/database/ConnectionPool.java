@@ -0,0 +1,246 @@
+package database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded pool of SQLite connections: many readers and one serialized writer.
+ * Connections handed out are proxies whose close() returns them to the pool.
+ */
+class ConnectionPool {
+
+    private final String url;
+    private final int maxReaders;
+    private final long timeoutMillis;
+
+    private final BlockingQueue<Connection> idleReaders;
+    private final List<Connection> allReaders = new ArrayList<>();
+    private final AtomicInteger createdReaders = new AtomicInteger();
+
+    private final ReentrantLock writerLock = new ReentrantLock(true);
+    private Connection writer;
+
+    private final LongAdder acquisitions = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    private volatile boolean closed;
+
+    ConnectionPool(String url, int maxReaders, long timeoutMillis) throws SQLException {
+        this.url = url;
+        this.maxReaders = maxReaders;
+        this.timeoutMillis = timeoutMillis;
+        this.idleReaders = new ArrayBlockingQueue<>(maxReaders);
+
+        // The writer switches the file to WAL once; the mode is persistent in the DB file
+        writer = open(false);
+    }
+
+    Connection acquireReader() throws SQLException {
+        ensureOpen();
+        long start = System.nanoTime();
+
+        Connection conn = idleReaders.poll();
+        if (conn == null) conn = tryCreateReader();
+        if (conn == null) {
+            try {
+                conn = idleReaders.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for a read connection", e);
+            }
+            if (conn == null) throw new SQLException("Timed out waiting for a read connection");
+        }
+
+        recordWait(start);
+        return wrap(conn, this::releaseReader);
+    }
+
+    Connection acquireWriter() throws SQLException {
+        ensureOpen();
+        long start = System.nanoTime();
+
+        try {
+            if (!writerLock.tryLock(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Timed out waiting for the write connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for the write connection", e);
+        }
+
+        recordWait(start);
+        return wrap(writer, this::releaseWriter);
+    }
+
+    PoolStats stats() {
+        long count = acquisitions.sum();
+        int idle = idleReaders.size();
+        return new PoolStats(
+                createdReaders.get() - idle,
+                idle,
+                maxReaders,
+                writerLock.isLocked(),
+                writerLock.getQueueLength(),
+                count,
+                count == 0 ? 0 : totalWaitNanos.sum() / 1_000_000.0 / count,
+                maxWaitNanos.get() / 1_000_000.0
+        );
+    }
+
+    synchronized void close() {
+        closed = true;
+        synchronized (allReaders) {
+            allReaders.forEach(ConnectionPool::closeQuietly);
+            allReaders.clear();
+        }
+        idleReaders.clear();
+
+        // Give a running import the chance to finish its batch before the writer goes away
+        boolean locked = false;
+        try {
+            locked = writerLock.tryLock(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        closeQuietly(writer);
+        if (locked) writerLock.unlock();
+    }
+
+    private Connection tryCreateReader() throws SQLException {
+        while (true) {
+            int created = createdReaders.get();
+            if (created >= maxReaders) return null;
+            if (createdReaders.compareAndSet(created, created + 1)) break;
+        }
+        try {
+            Connection conn = open(true);
+            synchronized (allReaders) {
+                allReaders.add(conn);
+            }
+            return conn;
+        } catch (SQLException e) {
+            createdReaders.decrementAndGet();
+            throw e;
+        }
+    }
+
+    private Connection open(boolean reader) throws SQLException {
+        Connection conn = DriverManager.getConnection(url);
+        try (Statement stmt = conn.createStatement()) {
+            if (!reader) {
+                stmt.execute("PRAGMA journal_mode = WAL");
+            }
+            stmt.execute("PRAGMA synchronous = NORMAL");
+            stmt.execute("PRAGMA busy_timeout = " + timeoutMillis);
+            stmt.execute("PRAGMA cache_size = -16000");
+            stmt.execute("PRAGMA mmap_size = 268435456");
+            stmt.execute("PRAGMA temp_store = MEMORY");
+            if (reader) stmt.execute("PRAGMA query_only = ON");
+        }
+        return conn;
+    }
+
+    private void releaseReader(Connection conn) {
+        if (!resetQuietly(conn) || closed) {
+            discardReader(conn);
+            return;
+        }
+        if (!idleReaders.offer(conn)) discardReader(conn);
+    }
+
+    private void discardReader(Connection conn) {
+        synchronized (allReaders) {
+            allReaders.remove(conn);
+        }
+        createdReaders.decrementAndGet();
+        closeQuietly(conn);
+    }
+
+    private void releaseWriter(Connection conn) {
+        try {
+            // Only the outermost holder may end a transaction left open by a nested caller
+            if (writerLock.getHoldCount() == 1 && !resetQuietly(conn) && !closed) {
+                closeQuietly(conn);
+                writer = open(false);
+            }
+        } catch (SQLException e) {
+            System.err.println("❌ Failed to reopen write connection: " + e.getMessage());
+        } finally {
+            writerLock.unlock();
+        }
+    }
+
+    // Roll back anything left uncommitted so the next borrower starts clean
+    private static boolean resetQuietly(Connection conn) {
+        try {
+            if (conn.isClosed()) return false;
+            if (!conn.getAutoCommit()) {
+                conn.rollback();
+                conn.setAutoCommit(true);
+            }
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void recordWait(long start) {
+        long waited = System.nanoTime() - start;
+        acquisitions.increment();
+        totalWaitNanos.add(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+    }
+
+    private void ensureOpen() throws SQLException {
+        if (closed) throw new SQLException("Connection pool is closed");
+    }
+
+    private static void closeQuietly(Connection conn) {
+        try {
+            if (conn != null) conn.close();
+        } catch (SQLException ignored) {
+        }
+    }
+
+    private interface Releaser {
+        void release(Connection conn);
+    }
+
+    private static Connection wrap(Connection target, Releaser releaser) {
+        AtomicBoolean released = new AtomicBoolean();
+        InvocationHandler handler = (proxy, method, args) -> switch (method.getName()) {
+            case "close" -> {
+                if (released.compareAndSet(false, true)) releaser.release(target);
+                yield null;
+            }
+            case "isClosed" -> released.get() || target.isClosed();
+            case "unwrap" -> ((Class<?>) args[0]).isInstance(proxy) ? proxy : target.unwrap((Class<?>) args[0]);
+            default -> {
+                if (released.get()) throw new SQLException("Connection has already been returned to the pool");
+                try {
+                    yield method.invoke(target, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }
+        };
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, handler);
+    }
+}
@@ -0,0 +1,318 @@
+package database;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Bulk CSV import on the write connection. Rows are grouped into transactions of
+ * {@code batchSize} inserts that reuse the same prepared statements, and each batch is added to
+ * the search index in one statement; a failing batch is rolled back and replayed row by row so
+ * every bad row is still reported on its own.
+ */
+public class CsvImporter {
+
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    private static final String AUDIO_BASE_PATH = "data/audiofiles/";
+    private static final String[] DIMENSIONS = {"artists", "languages", "genres"};
+
+    public interface ProgressListener {
+        void onProgress(Progress progress);
+    }
+
+    public record Progress(long linesRead, int added, int failed, int batches, double rowsPerSecond, boolean finished) {
+        @Override
+        public String toString() {
+            return "%d lines read, %d added, %d failed, %d batches (%.0f rows/s)%s"
+                    .formatted(linesRead, added, failed, batches, rowsPerSecond, finished ? " ✔" : "");
+        }
+    }
+
+    private record Row(String title, String artist, String language, String genre, double rating, String fileName) {}
+
+    private final int batchSize;
+    private final ProgressListener listener;
+
+    private final Map<String, Map<String, Integer>> pendingIds = new HashMap<>();
+    private final Map<String, PreparedStatement> selectDimension = new HashMap<>();
+    private final Map<String, PreparedStatement> insertDimension = new HashMap<>();
+    private PreparedStatement insertSong;
+
+    private long linesRead;
+    private int added;
+    private int failed;
+    private int batches;
+    private long startNanos;
+
+    public CsvImporter(int batchSize, ProgressListener listener) {
+        if (batchSize < 1) throw new IllegalArgumentException("batchSize must be positive");
+        this.batchSize = batchSize;
+        this.listener = listener;
+        for (String table : DIMENSIONS) {
+            pendingIds.put(table, new LinkedHashMap<>());
+        }
+    }
+
+    public int importFile(String path) {
+        startNanos = System.nanoTime();
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(path));
+             Connection conn = DbManager.getWriteConnection()) {
+
+            prepare(conn);
+            conn.setAutoCommit(false);
+
+            List<Row> batch = new ArrayList<>(batchSize);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                linesRead++;
+                Row row = parse(line);
+                if (row == null) {
+                    System.out.println("⚠️ Skipping malformed line: " + line);
+                    continue;
+                }
+
+                batch.add(row);
+                if (batch.size() == batchSize) {
+                    flush(conn, batch);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) flush(conn, batch);
+
+        } catch (IOException e) {
+            System.out.println("❌ Failed to read file: " + e.getMessage());
+        } catch (SQLException e) {
+            System.out.println("❌ Import aborted: " + e.getMessage());
+        } finally {
+            closeStatements();
+        }
+
+        report(true);
+        if (added > 0) DbAssist.fireChange(CatalogChange.reload());
+        return added;
+    }
+
+    private void prepare(Connection conn) throws SQLException {
+        for (String table : DIMENSIONS) {
+            selectDimension.put(table, conn.prepareStatement("SELECT id FROM " + table + " WHERE name = ?"));
+            insertDimension.put(table, conn.prepareStatement(
+                    "INSERT INTO " + table + " (name) VALUES (?)", Statement.RETURN_GENERATED_KEYS));
+        }
+        insertSong = conn.prepareStatement(
+                "INSERT INTO songs (title, artist_id, language_id, genre_id, rating, file_name) VALUES (?, ?, ?, ?, ?, ?)");
+    }
+
+    private void flush(Connection conn, List<Row> batch) throws SQLException {
+        List<Row> queued = new ArrayList<>(batch.size());
+        boolean[] reported = new boolean[batch.size()];
+        try {
+            long lastId = SearchIndexSync.suspend(conn);
+            for (int i = 0; i < batch.size(); i++) {
+                Row row = batch.get(i);
+                if (bind(row)) {
+                    insertSong.addBatch();
+                    queued.add(row);
+                } else {
+                    reportFailure(row, "could not resolve artist, language or genre");
+                    reported[i] = true;
+                }
+            }
+            insertSong.executeBatch();
+            SearchIndexSync.indexSince(conn, lastId);
+            conn.commit();
+            publishPending();
+            invalidateCached(queued);
+            added += queued.size();
+        } catch (SQLException e) {
+            insertSong.clearBatch();
+            conn.rollback();
+            discardPending();
+            // bind can throw part way through, so replay every row not already reported
+            List<Row> unreported = new ArrayList<>(batch.size());
+            for (int i = 0; i < batch.size(); i++) {
+                if (!reported[i]) unreported.add(batch.get(i));
+            }
+            replay(conn, unreported);
+        }
+
+        batches++;
+        report(false);
+    }
+
+    // Re-run a rolled back batch one row at a time so only the bad rows are lost
+    private void replay(Connection conn, List<Row> rows) throws SQLException {
+        List<Row> inserted = new ArrayList<>(rows.size());
+        for (Row row : rows) {
+            int[] mark = pendingMark();
+            Savepoint savepoint = conn.setSavepoint();
+            try {
+                if (bind(row) && insertSong.executeUpdate() > 0) {
+                    inserted.add(row);
+                    added++;
+                } else {
+                    reportFailure(row, "could not resolve artist, language or genre");
+                }
+                conn.releaseSavepoint(savepoint);
+            } catch (SQLException e) {
+                conn.rollback(savepoint);
+                conn.releaseSavepoint(savepoint);
+                discardPendingSince(mark);
+                reportFailure(row, e.getMessage());
+            }
+        }
+        conn.commit();
+        publishPending();
+        invalidateCached(inserted);
+    }
+
+    // Drop the cached lists the committed rows now belong to
+    private static void invalidateCached(List<Row> rows) {
+        if (rows.isEmpty()) return;
+        Set<String> tags = new HashSet<>();
+        tags.add(QueryCache.CATALOG_TAG);
+        for (Row row : rows) {
+            tags.add(QueryCache.titleTag(row.title()));
+            tags.add(QueryCache.categoryTag("artist", row.artist()));
+            tags.add(QueryCache.categoryTag("language", row.language()));
+            tags.add(QueryCache.categoryTag("genre", row.genre()));
+        }
+        QueryCache.invalidate(tags);
+    }
+
+    private boolean bind(Row row) throws SQLException {
+        int artistId = resolveId("artists", row.artist());
+        int languageId = resolveId("languages", row.language());
+        int genreId = resolveId("genres", row.genre());
+        if (artistId == -1 || languageId == -1 || genreId == -1) return false;
+
+        insertSong.setString(1, row.title());
+        insertSong.setInt(2, artistId);
+        insertSong.setInt(3, languageId);
+        insertSong.setInt(4, genreId);
+        insertSong.setDouble(5, row.rating());
+        insertSong.setString(6, row.fileName());
+        return true;
+    }
+
+    private int resolveId(String table, String name) throws SQLException {
+        DimensionCache cache = DimensionCache.forTable(table);
+        Integer known = cache.idOf(name);
+        if (known == null) known = pendingIds.get(table).get(name);
+        if (known != null) return known;
+
+        // Ids read or created inside the open transaction only become trusted once it commits;
+        // the select can see a row this transaction inserted and may still roll back
+        PreparedStatement select = selectDimension.get(table);
+        select.setString(1, name);
+        try (ResultSet rs = select.executeQuery()) {
+            if (rs.next()) {
+                int id = rs.getInt("id");
+                pendingIds.get(table).put(name, id);
+                return id;
+            }
+        }
+
+        PreparedStatement insert = insertDimension.get(table);
+        insert.setString(1, name);
+        insert.executeUpdate();
+        try (ResultSet keys = insert.getGeneratedKeys()) {
+            if (!keys.next()) return -1;
+            int id = keys.getInt(1);
+            pendingIds.get(table).put(name, id);
+            return id;
+        }
+    }
+
+    private void publishPending() {
+        for (String table : DIMENSIONS) {
+            DimensionCache cache = DimensionCache.forTable(table);
+            pendingIds.get(table).forEach((name, id) -> cache.put(id, name));
+            pendingIds.get(table).clear();
+        }
+    }
+
+    private void discardPending() {
+        pendingIds.values().forEach(Map::clear);
+    }
+
+    // How many ids each dimension has pending, in DIMENSIONS order
+    private int[] pendingMark() {
+        int[] mark = new int[DIMENSIONS.length];
+        for (int i = 0; i < DIMENSIONS.length; i++) {
+            mark[i] = pendingIds.get(DIMENSIONS[i]).size();
+        }
+        return mark;
+    }
+
+    // Forget the ids resolved after mark, which a savepoint rollback has undone; earlier ones still stand
+    private void discardPendingSince(int[] mark) {
+        for (int i = 0; i < DIMENSIONS.length; i++) {
+            Iterator<Integer> ids = pendingIds.get(DIMENSIONS[i]).values().iterator();
+            for (int kept = 0; kept < mark[i]; kept++) ids.next();
+            while (ids.hasNext()) {
+                ids.next();
+                ids.remove();
+            }
+        }
+    }
+
+    private static Row parse(String line) {
+        String[] parts = line.split(",");
+        if (parts.length != 6) return null;
+
+        String title = parts[0].trim();
+        String artistFull = parts[1].trim();
+        String artist = artistFull.contains("-") ? artistFull.split("-")[0].trim() : artistFull;
+        String language = parts[2].trim();
+        String genre = parts[3].trim();
+
+        double rating;
+        try {
+            rating = Double.parseDouble(parts[4].trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+
+        String fileName = AUDIO_BASE_PATH + title + ".mp3";
+        return new Row(DbAssist.formatText(title), DbAssist.formatText(artist), DbAssist.formatText(language),
+                DbAssist.formatText(genre), rating, fileName);
+    }
+
+    private void reportFailure(Row row, String reason) {
+        failed++;
+        System.out.println("❌ Failed to add song: " + row.title() + " - " + reason);
+    }
+
+    private void report(boolean finished) {
+        if (listener == null) return;
+        double seconds = (System.nanoTime() - startNanos) / 1_000_000_000.0;
+        listener.onProgress(new Progress(linesRead, added, failed, batches,
+                seconds > 0 ? added / seconds : 0, finished));
+    }
+
+    private void closeStatements() {
+        List<PreparedStatement> statements = new ArrayList<>(selectDimension.values());
+        statements.addAll(insertDimension.values());
+        statements.add(insertSong);
+        for (PreparedStatement stmt : statements) {
+            try {
+                if (stmt != null) stmt.close();
+            } catch (SQLException ignored) {
+            }
+        }
+        selectDimension.clear();
+        insertDimension.clear();
+        insertSong = null;
+    }
+}
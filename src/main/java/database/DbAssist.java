@@ -1,17 +1,46 @@
 package database;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class DbAssist {
 
-    private static final String AUDIO_BASE_PATH = "data/audiofiles/";
+    private static final int IN_CHUNK_SIZE = 500;
+    private static final String[] DIMENSIONS = {"artists", "languages", "genres"};
+
+    private static final List<CatalogChange.Listener> listeners = new CopyOnWriteArrayList<>();
+    private static final AtomicBoolean sweepScheduled = new AtomicBoolean();
+
+    public static void addChangeListener(CatalogChange.Listener listener) {
+        listeners.add(listener);
+    }
+
+    public static void removeChangeListener(CatalogChange.Listener listener) {
+        listeners.remove(listener);
+    }
+
+    // Called after commit, outside the write connection, on the thread that did the write
+    static void fireChange(CatalogChange change) {
+        for (CatalogChange.Listener listener : listeners) {
+            try {
+                listener.catalogChanged(change);
+            } catch (RuntimeException e) {
+                System.err.println("❌ Catalog listener failed: " + e.getMessage());
+            }
+        }
+    }
 
     public static boolean addSong(String title, String artist, String language, String genre, double rating, String fileName) {
-        try (Connection conn = DbManager.getConnection()) {
+        int songId = -1;
+        try (Connection conn = DbManager.getWriteConnection()) {
 
             title = formatText(title);
             artist = formatText(artist);
@@ -27,26 +56,38 @@ public class DbAssist {
             String sql = "INSERT INTO songs (title, artist_id, language_id, genre_id, rating, file_name) " +
                          "VALUES (?, ?, ?, ?, ?, ?)";
 
-            PreparedStatement ps = conn.prepareStatement(sql);
-            ps.setString(1, title);
-            ps.setInt(2, artistId);
-            ps.setInt(3, languageId);
-            ps.setInt(4, genreId);
-            ps.setDouble(5, rating);
-            ps.setString(6, fileName);
-
-            return ps.executeUpdate() > 0;
+            try (PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                ps.setString(1, title);
+                ps.setInt(2, artistId);
+                ps.setInt(3, languageId);
+                ps.setInt(4, genreId);
+                ps.setDouble(5, rating);
+                ps.setString(6, fileName);
+
+                if (ps.executeUpdate() == 0) return false;
+                ResultSet keys = ps.getGeneratedKeys();
+                if (keys.next()) songId = keys.getInt(1);
+            }
 
         } catch (SQLException e) {
             System.out.println("❌ Failed to add song: " + title + " - " + e.getMessage());
             return false;
         }
+
+        QueryCache.invalidate(cacheTags(songId, title, artist, language, genre));
+        fireChange(songId > 0 ? CatalogChange.upserted(List.of(songId)) : CatalogChange.reload());
+        return true;
     }
 
     public static boolean updateSongById(int id, String title, String artist, String language, String genre, double rating) {
         String sql = "UPDATE songs SET title = ?, artist_id = ?, language_id = ?, genre_id = ?, rating = ? WHERE id = ?";
+        List<String> staleTags;
+
+        try (Connection conn = DbManager.getWriteConnection()) {
 
-        try (Connection conn = DbManager.getConnection()) {
+            // Cached lists that held the song under its old title or categories go stale too
+            staleTags = currentCacheTags(conn, id);
+            if (staleTags == null) return false;
 
             title = formatText(title);
             artist = formatText(artist);
@@ -59,115 +100,371 @@ public class DbAssist {
 
             if (artistId == -1 || languageId == -1 || genreId == -1) return false;
 
-            PreparedStatement stmt = conn.prepareStatement(sql);
-            stmt.setString(1, title);
-            stmt.setInt(2, artistId);
-            stmt.setInt(3, languageId);
-            stmt.setInt(4, genreId);
-            stmt.setDouble(5, rating);
-            stmt.setInt(6, id);
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setString(1, title);
+                stmt.setInt(2, artistId);
+                stmt.setInt(3, languageId);
+                stmt.setInt(4, genreId);
+                stmt.setDouble(5, rating);
+                stmt.setInt(6, id);
 
-            return stmt.executeUpdate() > 0;
+                if (stmt.executeUpdate() == 0) return false;
+            }
 
         } catch (SQLException e) {
             System.err.println("❌ Failed to update song with ID " + id + ": " + e.getMessage());
             return false;
         }
+
+        staleTags.addAll(cacheTags(id, title, artist, language, genre));
+        QueryCache.invalidate(staleTags);
+        scheduleOrphanSweep();
+        fireChange(CatalogChange.upserted(List.of(id)));
+        return true;
     }
 
-    private static int getOrCreateId(Connection conn, String table, String name) throws SQLException {
-        String selectSql = "SELECT id FROM " + table + " WHERE name = ?";
-        PreparedStatement selectStmt = conn.prepareStatement(selectSql);
-        selectStmt.setString(1, name);
-        ResultSet rs = selectStmt.executeQuery();
+    // Every QueryCache tag a row with these values can appear under
+    private static List<String> cacheTags(int songId, String title, String artist, String language, String genre) {
+        List<String> tags = new ArrayList<>(List.of(QueryCache.CATALOG_TAG, QueryCache.titleTag(title),
+                QueryCache.categoryTag("artist", artist), QueryCache.categoryTag("language", language),
+                QueryCache.categoryTag("genre", genre)));
+        if (songId > 0) tags.add(QueryCache.songTag(songId));
+        return tags;
+    }
 
-        if (rs.next()) return rs.getInt("id");
+    // Tags of the row as currently stored; null when the song does not exist
+    private static List<String> currentCacheTags(Connection conn, int songId) throws SQLException {
+        List<String> tags = new ArrayList<>();
+        return addCurrentCacheTags(conn, List.of(songId), tags) == 0 ? null : tags;
+    }
+
+    // Adds the tags of every stored row in songIds to tags; returns the number of rows found
+    private static int addCurrentCacheTags(Connection conn, List<Integer> songIds, Collection<String> tags) throws SQLException {
+        int found = 0;
+        for (int from = 0; from < songIds.size(); from += IN_CHUNK_SIZE) {
+            List<Integer> chunk = songIds.subList(from, Math.min(from + IN_CHUNK_SIZE, songIds.size()));
+            String sql = """
+                SELECT s.id, s.title, a.name AS artist, l.name AS language, g.name AS genre
+                FROM songs s
+                JOIN artists a ON s.artist_id = a.id
+                JOIN languages l ON s.language_id = l.id
+                JOIN genres g ON s.genre_id = g.id
+                WHERE s.id IN (%s)
+            """.formatted(placeholders(chunk.size()));
+
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                bindIds(stmt, 1, chunk);
+                ResultSet rs = stmt.executeQuery();
+                while (rs.next()) {
+                    tags.addAll(cacheTags(rs.getInt("id"), rs.getString("title"), rs.getString("artist"),
+                            rs.getString("language"), rs.getString("genre")));
+                    found++;
+                }
+            }
+        }
+        return found;
+    }
+
+    private static String placeholders(int count) {
+        return String.join(",", Collections.nCopies(count, "?"));
+    }
+
+    private static int bindIds(PreparedStatement stmt, int param, List<Integer> ids) throws SQLException {
+        for (int id : ids) {
+            stmt.setInt(param++, id);
+        }
+        return param;
+    }
+
+    static int getOrCreateId(Connection conn, String table, String name) throws SQLException {
+        DimensionCache cache = DimensionCache.forTable(table);
+        Integer cachedId = cache.idOf(name);
+        if (cachedId != null) return cachedId;
+
+        String selectSql = "SELECT id FROM " + table + " WHERE name = ?";
+        try (PreparedStatement selectStmt = conn.prepareStatement(selectSql)) {
+            selectStmt.setString(1, name);
+            ResultSet rs = selectStmt.executeQuery();
+
+            if (rs.next()) {
+                int id = rs.getInt("id");
+                cache.put(id, name);
+                return id;
+            }
+        }
 
         // If not found, insert
         String insertSql = "INSERT INTO " + table + " (name) VALUES (?)";
-        PreparedStatement insertStmt = conn.prepareStatement(insertSql, Statement.RETURN_GENERATED_KEYS);
-        insertStmt.setString(1, name);
-        insertStmt.executeUpdate();
-        ResultSet keys = insertStmt.getGeneratedKeys();
-        return keys.next() ? keys.getInt(1) : -1;
+        try (PreparedStatement insertStmt = conn.prepareStatement(insertSql, Statement.RETURN_GENERATED_KEYS)) {
+            insertStmt.setString(1, name);
+            insertStmt.executeUpdate();
+            ResultSet keys = insertStmt.getGeneratedKeys();
+            if (!keys.next()) return -1;
+
+            int id = keys.getInt(1);
+            cache.put(id, name);
+            return id;
+        }
     }
 
     public static int importFromCSV(String path) {
-        int added = 0;
+        return importFromCSV(path, CsvImporter.DEFAULT_BATCH_SIZE,
+                progress -> System.out.println("📥 Import progress: " + progress));
+    }
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(path))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split(",");
+    // Rows are committed in transactions of batchSize inserts; listener may be null
+    public static int importFromCSV(String path, int batchSize, CsvImporter.ProgressListener listener) {
+        return new CsvImporter(batchSize, listener).importFile(path);
+    }
 
-                if (parts.length != 6) {
-                    System.out.println("⚠️ Skipping malformed line: " + line);
-                    continue;
-                }
+    public static boolean deleteSongById(int songId) {
+        return deleteSongs(List.of(songId)) > 0;
+    }
 
-                String title = parts[0].trim();
-                String artistFull = parts[1].trim();
-                String artist = artistFull.contains("-") ? artistFull.split("-")[0].trim() : artistFull;
-                String language = parts[2].trim();
-                String genre = parts[3].trim();
-                double rating = Double.parseDouble(parts[4].trim());
-                String fileName = AUDIO_BASE_PATH + title + ".mp3";
+    /**
+     * Delete all of {@code songIds} in one transaction. Artists, languages and genres left without
+     * songs are removed afterwards by a background {@link #sweepOrphans()}.
+     *
+     * @return number of songs deleted, 0 when none existed or the transaction failed
+     */
+    public static int deleteSongs(Collection<Integer> songIds) {
+        List<Integer> ids = new ArrayList<>(new LinkedHashSet<>(songIds));
+        if (ids.isEmpty()) return 0;
 
-                boolean success = addSong(title, artist, language, genre, rating, fileName);
-                if (success) added++;
+        List<Integer> deleted = new ArrayList<>();
+        Set<String> staleTags = new HashSet<>();
+
+        try (Connection conn = DbManager.getWriteConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                addCurrentCacheTags(conn, ids, staleTags);
+
+                for (int from = 0; from < ids.size(); from += IN_CHUNK_SIZE) {
+                    List<Integer> chunk = ids.subList(from, Math.min(from + IN_CHUNK_SIZE, ids.size()));
+                    String sql = "DELETE FROM songs WHERE id IN (%s) RETURNING id".formatted(placeholders(chunk.size()));
+                    try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                        bindIds(stmt, 1, chunk);
+                        ResultSet rs = stmt.executeQuery();
+                        while (rs.next()) deleted.add(rs.getInt(1));
+                    }
+                    PlayHistory.forgetSongs(conn, chunk);
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
             }
 
-        } catch (Exception e) {
-            System.out.println("❌ Failed to read file: " + e.getMessage());
+        } catch (SQLException e) {
+            System.err.println("❌ Error deleting " + ids.size() + " song(s): " + e.getMessage());
+            return 0;
         }
 
-        return added;
+        if (deleted.isEmpty()) return 0;
+        QueryCache.invalidate(staleTags);
+        scheduleOrphanSweep();
+        fireChange(CatalogChange.deleted(deleted));
+        return deleted.size();
     }
 
-    public static boolean deleteSongById(int songId) {
-        String deleteSql = "DELETE FROM songs WHERE id = ?";
-        String fetchIdsSql = "SELECT artist_id, language_id, genre_id FROM songs WHERE id = ?";
+    // Delete the songs playing any of fileNames, e.g. after the files were removed from disk
+    public static int deleteSongsByFile(Collection<String> fileNames) {
+        if (fileNames.isEmpty()) return 0;
+        return deleteSongs(DbFinder.findSongIdsByFileNames(fileNames));
+    }
 
-        try (Connection conn = DbManager.getConnection()) {
+    /**
+     * Fold duplicates into one song: keepId takes the highest rating among them all and the
+     * duplicates are deleted, in one transaction.
+     *
+     * @return number of duplicates deleted, 0 when keepId does not exist or the transaction failed
+     */
+    public static int mergeSongs(int keepId, Collection<Integer> duplicateIds) {
+        List<Integer> ids = new ArrayList<>(new LinkedHashSet<>(duplicateIds));
+        ids.remove(Integer.valueOf(keepId));
+        if (ids.isEmpty()) return 0;
+
+        List<Integer> deleted = new ArrayList<>();
+        Set<String> staleTags = new HashSet<>();
+
+        try (Connection conn = DbManager.getWriteConnection()) {
             conn.setAutoCommit(false);
+            try {
+                if (addCurrentCacheTags(conn, List.of(keepId), staleTags) == 0) {
+                    conn.rollback();
+                    return 0;
+                }
+                addCurrentCacheTags(conn, ids, staleTags);
+
+                List<Integer> all = new ArrayList<>(ids);
+                all.add(keepId);
+                String rate = "UPDATE songs SET rating = (SELECT MAX(rating) FROM songs WHERE id IN (%s)) WHERE id = ?"
+                        .formatted(placeholders(all.size()));
+                try (PreparedStatement stmt = conn.prepareStatement(rate)) {
+                    int param = bindIds(stmt, 1, all);
+                    stmt.setInt(param, keepId);
+                    stmt.executeUpdate();
+                }
 
-            int artistId = -1, languageId = -1, genreId = -1;
-            try (PreparedStatement fetchStmt = conn.prepareStatement(fetchIdsSql)) {
-                fetchStmt.setInt(1, songId);
-                ResultSet rs = fetchStmt.executeQuery();
-                if (rs.next()) {
-                    artistId = rs.getInt("artist_id");
-                    languageId = rs.getInt("language_id");
-                    genreId = rs.getInt("genre_id");
-                } else {
-                    return false;
+                PlayHistory.mergeSongs(conn, keepId, ids);
+
+                for (int from = 0; from < ids.size(); from += IN_CHUNK_SIZE) {
+                    List<Integer> chunk = ids.subList(from, Math.min(from + IN_CHUNK_SIZE, ids.size()));
+                    String sql = "DELETE FROM songs WHERE id IN (%s) RETURNING id".formatted(placeholders(chunk.size()));
+                    try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                        bindIds(stmt, 1, chunk);
+                        ResultSet rs = stmt.executeQuery();
+                        while (rs.next()) deleted.add(rs.getInt(1));
+                    }
                 }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
             }
 
-            try (PreparedStatement deleteStmt = conn.prepareStatement(deleteSql)) {
-                deleteStmt.setInt(1, songId);
-                int affected = deleteStmt.executeUpdate();
-                if (affected == 0) return false;
+        } catch (SQLException e) {
+            System.err.println("❌ Error merging " + ids.size() + " duplicate(s) into song " + keepId + ": " + e.getMessage());
+            return 0;
+        }
+
+        QueryCache.invalidate(staleTags);
+        scheduleOrphanSweep();
+        fireChange(new CatalogChange(Set.of(keepId), Set.copyOf(deleted), false));
+        return deleted.size();
+    }
+
+    /**
+     * Set the same artist, language, genre and/or rating on all of {@code songIds} in one
+     * transaction. A null argument leaves that column unchanged; titles are edited one song at a
+     * time with {@link #updateSongById}.
+     *
+     * @return number of songs updated, 0 when none existed or the transaction failed
+     */
+    public static int updateSongs(Collection<Integer> songIds, String artist, String language, String genre, Double rating) {
+        List<Integer> ids = new ArrayList<>(new LinkedHashSet<>(songIds));
+        if (ids.isEmpty()) return 0;
+
+        artist = formatText(artist);
+        language = formatText(language);
+        genre = formatText(genre);
+
+        List<String> assignments = new ArrayList<>();
+        if (artist != null && !artist.isEmpty()) assignments.add("artist_id = ?");
+        if (language != null && !language.isEmpty()) assignments.add("language_id = ?");
+        if (genre != null && !genre.isEmpty()) assignments.add("genre_id = ?");
+        if (rating != null) assignments.add("rating = ?");
+        if (assignments.isEmpty()) return 0;
+
+        List<Integer> updated = new ArrayList<>();
+        Set<String> staleTags = new HashSet<>();
+
+        try (Connection conn = DbManager.getWriteConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                addCurrentCacheTags(conn, ids, staleTags);
+
+                List<Integer> values = new ArrayList<>();
+                for (String[] column : new String[][]{{"artists", artist}, {"languages", language}, {"genres", genre}}) {
+                    if (column[1] == null || column[1].isEmpty()) continue;
+                    int id = getOrCreateId(conn, column[0], column[1]);
+                    if (id == -1) throw new SQLException("could not resolve " + column[1]);
+                    values.add(id);
+                }
+
+                for (int from = 0; from < ids.size(); from += IN_CHUNK_SIZE) {
+                    List<Integer> chunk = ids.subList(from, Math.min(from + IN_CHUNK_SIZE, ids.size()));
+                    String sql = "UPDATE songs SET %s WHERE id IN (%s) RETURNING id"
+                            .formatted(String.join(", ", assignments), placeholders(chunk.size()));
+                    try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                        int param = 1;
+                        for (int value : values) stmt.setInt(param++, value);
+                        if (rating != null) stmt.setDouble(param++, rating);
+                        bindIds(stmt, param, chunk);
+                        ResultSet rs = stmt.executeQuery();
+                        while (rs.next()) updated.add(rs.getInt(1));
+                    }
+                }
+
+                addCurrentCacheTags(conn, updated, staleTags);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                // getOrCreateId may have cached ids of dimension rows that were just rolled back
+                for (String table : DIMENSIONS) DimensionCache.forTable(table).invalidate();
+                throw e;
             }
 
-            try (Statement stmt = conn.createStatement()) {
-                stmt.executeUpdate("DELETE FROM artists WHERE id = " + artistId + " AND NOT EXISTS (SELECT 1 FROM songs WHERE artist_id = " + artistId + ")");
-                stmt.executeUpdate("DELETE FROM languages WHERE id = " + languageId + " AND NOT EXISTS (SELECT 1 FROM songs WHERE language_id = " + languageId + ")");
-                stmt.executeUpdate("DELETE FROM genres WHERE id = " + genreId + " AND NOT EXISTS (SELECT 1 FROM songs WHERE genre_id = " + genreId + ")");
+        } catch (SQLException e) {
+            System.err.println("❌ Failed to update " + ids.size() + " song(s): " + e.getMessage());
+            return 0;
+        }
+
+        if (updated.isEmpty()) return 0;
+        QueryCache.invalidate(staleTags);
+        scheduleOrphanSweep();
+        fireChange(CatalogChange.upserted(updated));
+        return updated.size();
+    }
+
+    /**
+     * Remove every artist, language and genre that no song refers to any more, one set-based
+     * statement per table in a single transaction.
+     *
+     * @return number of rows removed
+     */
+    public static int sweepOrphans() {
+        try (Connection conn = DbManager.getWriteConnection()) {
+            conn.setAutoCommit(false);
+            int removed = 0;
+            List<List<Integer>> removedIds = new ArrayList<>();
+            try {
+                for (String table : DIMENSIONS) {
+                    String column = table.substring(0, table.length() - 1) + "_id";
+                    String sql = "DELETE FROM %1$s WHERE NOT EXISTS (SELECT 1 FROM songs WHERE songs.%2$s = %1$s.id) RETURNING id"
+                            .formatted(table, column);
+                    List<Integer> ids = new ArrayList<>();
+                    try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+                        while (rs.next()) ids.add(rs.getInt(1));
+                    }
+                    removedIds.add(ids);
+                    removed += ids.size();
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
             }
 
-            conn.commit();
-            return true;
+            // Still holding the writer, so no other write can resolve a removed name from the cache
+            for (int i = 0; i < DIMENSIONS.length; i++) {
+                DimensionCache cache = DimensionCache.forTable(DIMENSIONS[i]);
+                removedIds.get(i).forEach(cache::remove);
+            }
+            if (removed > 0) System.out.println("🧹 Removed " + removed + " unused artists, languages and genres");
+            return removed;
 
         } catch (SQLException e) {
-            System.err.println("❌ Error deleting song with ID " + songId + ": " + e.getMessage());
-            return false;
+            System.err.println("❌ Orphan sweep failed: " + e.getMessage());
+            return 0;
         }
     }
 
+    // Run sweepOrphans on the background pool; requests made before it starts share one run
+    public static void scheduleOrphanSweep() {
+        if (!sweepScheduled.compareAndSet(false, true)) return;
+        AsyncDb.supply(() -> {
+            sweepScheduled.set(false);
+            return sweepOrphans();
+        }).exceptionally(error -> {
+            sweepScheduled.set(false);
+            System.err.println("❌ Orphan sweep not run: " + error.getMessage());
+            return 0;
+        });
+    }
 
     // Capitalize the first letter of every word
-    private static String formatText(String input) {
+    static String formatText(String input) {
         if (input == null || input.isEmpty()) return input;
         String[] words = input.toLowerCase().trim().split("\\s+");
         StringBuilder result = new StringBuilder();
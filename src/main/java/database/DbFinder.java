@@ -2,13 +2,42 @@ package database;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
 
 public class DbFinder {
 
+    // Stays well below SQLite's host parameter limit
+    private static final int IN_CHUNK_SIZE = 500;
+
+    private static final int MAX_CACHED_PAGE_SIZE = 500;
+
+    // Rejection rounds in randomSongIds before it settles for the next existing id
+    private static final int RANDOM_PROBE_ROUNDS = 4;
+
+    // Search rank of a row: its tier times this, plus the length of its title
+    private static final long RANK_TIER = 1_000_000;
+
+    static final String SONG_COLUMNS = "s.id, s.title, s.artist_id, s.language_id, s.genre_id, s.rating, s.file_name";
+
+    // "After (title, id)" spelled out so SQLite can turn the first term into an index range
+    private static final String TITLE_KEYSET =
+            "s.title COLLATE NOCASE >= ? AND (s.title COLLATE NOCASE > ? OR s.id > ?)";
+
     public static List<Integer> findSongIdsByTitle(String title) {
+        List<Integer> ids = QueryCache.get("ids-by-title:" + title.toLowerCase(), Set.of(QueryCache.titleTag(title)),
+                () -> loadSongIdsByTitle(title));
+        return ids == null ? List.of() : ids;
+    }
+
+    private static List<Integer> loadSongIdsByTitle(String title) {
         List<Integer> ids = new ArrayList<>();
         String sql = "SELECT id FROM songs WHERE LOWER(title) = ?";
 
@@ -24,20 +53,18 @@ public class DbFinder {
 
         } catch (SQLException e) {
             System.err.println("❌ Error fetching song IDs: " + e.getMessage());
+            return null;
         }
 
-        return ids;
+        return List.copyOf(ids);
     }
 
-    public static Map<String, String> searchSong(int id) {
-        String sql = """
-            SELECT s.title, s.file_name, a.name AS artist, l.name AS language, g.name AS genre, s.rating
-            FROM songs s
-            JOIN artists a ON s.artist_id = a.id
-            JOIN languages l ON s.language_id = l.id
-            JOIN genres g ON s.genre_id = g.id
-            WHERE s.id = ?
-        """;
+    public static Song searchSong(int id) {
+        return QueryCache.get(QueryCache.songTag(id), Set.of(QueryCache.songTag(id)), () -> loadSong(id));
+    }
+
+    private static Song loadSong(int id) {
+        String sql = "SELECT " + SONG_COLUMNS + " FROM songs s WHERE s.id = ?";
 
         try (Connection conn = DbManager.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
@@ -45,16 +72,7 @@ public class DbFinder {
             stmt.setInt(1, id);
             ResultSet rs = stmt.executeQuery();
 
-            if (rs.next()) {
-                Map<String, String> songData = new HashMap<>();
-                songData.put("Title", rs.getString("title"));
-                songData.put("Artist", rs.getString("artist"));
-                songData.put("Language", rs.getString("language"));
-                songData.put("Genre", rs.getString("genre"));
-                songData.put("Rating", String.valueOf(rs.getDouble("rating")));
-                songData.put("file_name", rs.getString("file_name"));
-                return songData;
-            }
+            if (rs.next()) return readSong(rs);
 
         } catch (SQLException e) {
             System.err.println("❌ Error searching song by ID: " + e.getMessage());
@@ -63,63 +81,414 @@ public class DbFinder {
         return null;
     }
 
-    public static List<Map<String, String>> searchSongsByTitleLike(String query) {
-        List<Map<String, String>> songs = new ArrayList<>();
+    /**
+     * Multi-get counterpart of {@link #searchSong(int)}: songs already cached are reused, the rest
+     * are fetched in chunked IN queries on one connection. Results are in the order of
+     * {@code ids}; unknown IDs are skipped and duplicates are returned once.
+     */
+    public static List<Song> searchSongs(Collection<Integer> ids) {
+        List<Integer> distinctIds = new ArrayList<>(new LinkedHashSet<>(ids));
+        Map<Integer, Song> byId = new HashMap<>(distinctIds.size() * 2);
+
+        List<Integer> missing = new ArrayList<>();
+        for (int id : distinctIds) {
+            if (QueryCache.lookup(QueryCache.songTag(id)) instanceof Song song) byId.put(id, song);
+            else missing.add(id);
+        }
+        long generation = QueryCache.generation();
+
+        try (Connection conn = DbManager.getConnection()) {
+            for (int from = 0; from < missing.size(); from += IN_CHUNK_SIZE) {
+                List<Integer> chunk = missing.subList(from, Math.min(from + IN_CHUNK_SIZE, missing.size()));
+                String sql = "SELECT " + SONG_COLUMNS + " FROM songs s WHERE s.id IN (%s)"
+                        .formatted(String.join(",", Collections.nCopies(chunk.size(), "?")));
+
+                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                    for (int i = 0; i < chunk.size(); i++) stmt.setInt(i + 1, chunk.get(i));
+                    ResultSet rs = stmt.executeQuery();
+
+                    while (rs.next()) {
+                        Song song = readSong(rs);
+                        byId.put(song.id(), song);
+                        QueryCache.put(QueryCache.songTag(song.id()), Set.of(QueryCache.songTag(song.id())), song, generation);
+                    }
+                }
+            }
+
+        } catch (SQLException e) {
+            System.err.println("❌ Error searching songs by ID: " + e.getMessage());
+        }
+
+        List<Song> songs = new ArrayList<>(byId.size());
+        for (int id : distinctIds) {
+            Song song = byId.get(id);
+            if (song != null) songs.add(song);
+        }
+        return songs;
+    }
+
+    // Ids of the songs whose file_name is one of fileNames; not cached, only file syncs ask
+    public static List<Integer> findSongIdsByFileNames(Collection<String> fileNames) {
+        List<String> names = new ArrayList<>(new LinkedHashSet<>(fileNames));
+        List<Integer> ids = new ArrayList<>();
+
+        try (Connection conn = DbManager.getConnection()) {
+            for (int from = 0; from < names.size(); from += IN_CHUNK_SIZE) {
+                List<String> chunk = names.subList(from, Math.min(from + IN_CHUNK_SIZE, names.size()));
+                String sql = "SELECT id FROM songs WHERE file_name IN (%s)"
+                        .formatted(String.join(",", Collections.nCopies(chunk.size(), "?")));
+
+                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                    for (int i = 0; i < chunk.size(); i++) stmt.setString(i + 1, chunk.get(i));
+                    ResultSet rs = stmt.executeQuery();
+                    while (rs.next()) ids.add(rs.getInt(1));
+                }
+            }
+
+        } catch (SQLException e) {
+            System.err.println("❌ Error fetching song IDs by file: " + e.getMessage());
+        }
+        return ids;
+    }
+
+    /**
+     * Songs whose files have identical audio, as hashed by the duplicate finder, grouped by hash.
+     * Songs sharing one file count as duplicates too. Ids are ascending within a group.
+     */
+    public static List<List<Integer>> findDuplicateSongIds() {
         String sql = """
-            SELECT s.id, s.title, a.name AS artist
+            SELECT f.audio_hash, s.id
             FROM songs s
-            JOIN artists a ON s.artist_id = a.id
-            WHERE LOWER(s.title) LIKE ?
-            ORDER BY 
-                CASE
-                    WHEN LOWER(s.title) LIKE ? THEN 1
-                    WHEN LOWER(s.title) LIKE ? THEN 2
-                    ELSE 3
-                END,
-                LENGTH(s.title) ASC
+            JOIN library_files f ON f.path = s.file_name
+            WHERE f.audio_hash IN (
+                SELECT f2.audio_hash
+                FROM songs s2
+                JOIN library_files f2 ON f2.path = s2.file_name
+                WHERE f2.audio_hash IS NOT NULL
+                GROUP BY f2.audio_hash
+                HAVING COUNT(*) > 1
+            )
+            ORDER BY f.audio_hash, s.id
         """;
+        List<List<Integer>> groups = new ArrayList<>();
 
         try (Connection conn = DbManager.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
 
-            String q = "%" + query.toLowerCase() + "%";
-            String qStart = query.toLowerCase() + "%";
-            String qMiddle = "% " + query.toLowerCase() + "%";
+            ResultSet rs = stmt.executeQuery();
+            long currentHash = 0;
+            List<Integer> group = null;
+            while (rs.next()) {
+                long hash = rs.getLong(1);
+                if (group == null || hash != currentHash) {
+                    group = new ArrayList<>();
+                    groups.add(group);
+                    currentHash = hash;
+                }
+                group.add(rs.getInt(2));
+            }
+
+        } catch (SQLException e) {
+            System.err.println("❌ Error finding duplicate songs: " + e.getMessage());
+        }
+        return groups;
+    }
 
-            stmt.setString(1, q);
-            stmt.setString(2, qStart);
-            stmt.setString(3, qMiddle);
+    // Playback gain of a file in dB from the loudness analysis; 0 until it has been analysed
+    public static double findTrackGainDb(String fileName) {
+        String sql = "SELECT gain_db FROM library_files WHERE path = ?";
+        try (Connection conn = DbManager.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
 
+            stmt.setString(1, fileName);
             ResultSet rs = stmt.executeQuery();
+            return rs.next() ? rs.getDouble(1) : 0;
 
-            while (rs.next()) {
-                Map<String, String> song = new HashMap<>();
-                song.put("ID", String.valueOf(rs.getInt("id")));
-                song.put("Title", rs.getString("title"));
-                song.put("Artist", rs.getString("artist"));
-                songs.add(song);
-            }
+        } catch (SQLException e) {
+            System.err.println("❌ Error fetching track gain: " + e.getMessage());
+            return 0;
+        }
+    }
 
+    /**
+     * Ranked full-text search over title, artist, language and genre, one page at a time; pass
+     * null for the first page. Every word of the query is matched as a prefix. Titles starting
+     * with the query come first, then titles with a word starting with it, then matches on the
+     * other columns; shorter titles win ties. Titles starting with the query are read first, as a
+     * range on idx_songs_title_lower, and the full-text matches are only ranked once a page
+     * reaches past them, so the first pages of a broad query never sort every match.
+     */
+    public static SongPage searchSongsPage(String query, PageKey after, int limit) {
+        String match = toMatchExpression(query);
+        if (match == null || limit <= 0) return new SongPage(List.of(), null);
+
+        String prefix = query.trim().toLowerCase();
+        List<Song> songs = new ArrayList<>(limit + 1);
+        List<Long> ranks = new ArrayList<>(limit + 1);
+        try (Connection conn = DbManager.getConnection()) {
+            if (after == null || after.rank() < 2 * RANK_TIER) {
+                readTitlePrefixes(conn, prefix, after, limit + 1, songs, ranks);
+            }
+            if (songs.size() <= limit) {
+                PageKey from = after != null && after.rank() >= 2 * RANK_TIER ? after : null;
+                readOtherMatches(conn, prefix, match, from, limit + 1 - songs.size(), songs, ranks);
+            }
         } catch (SQLException e) {
             System.err.println("❌ Search error: " + e.getMessage());
+            return new SongPage(List.of(), null);
         }
 
-        return songs;
+        if (songs.size() <= limit) return new SongPage(List.copyOf(songs), null);
+        Song last = songs.get(limit - 1);
+        return new SongPage(List.copyOf(songs.subList(0, limit)), new PageKey(ranks.get(limit - 1), last.title(), last.id()));
+    }
+
+    // Rank 1: titles starting with the query, shortest first
+    private static void readTitlePrefixes(Connection conn, String prefix, PageKey after, int limit,
+                                          List<Song> songs, List<Long> ranks) throws SQLException {
+        String sql = """
+            SELECT * FROM (
+                SELECT %s, %d + LENGTH(s.title) AS rank
+                FROM songs s
+                WHERE LOWER(s.title) >= ? AND LOWER(s.title) < ?
+            )
+            %s
+            ORDER BY rank, title COLLATE NOCASE, id
+            LIMIT ?
+        """.formatted(SONG_COLUMNS, RANK_TIER, after == null ? "" : "WHERE (rank, title COLLATE NOCASE, id) > (?, ?, ?)");
+
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            int param = 1;
+            stmt.setString(param++, prefix);
+            stmt.setString(param++, prefixEnd(prefix));
+            param = bindRankKeyset(stmt, param, after);
+            stmt.setInt(param, limit);
+            readRanked(stmt, songs, ranks);
+        }
+    }
+
+    // Ranks 2 and 3: the other full-text matches, titles with a word starting with the query first
+    private static void readOtherMatches(Connection conn, String prefix, String match, PageKey after, int limit,
+                                         List<Song> songs, List<Long> ranks) throws SQLException {
+        String sql = """
+            SELECT * FROM (
+                SELECT %s,
+                       CASE
+                           WHEN LOWER(s.title) LIKE ? ESCAPE '\\' THEN 1
+                           WHEN LOWER(s.title) LIKE ? ESCAPE '\\' THEN 2
+                           ELSE 3
+                       END * %d + LENGTH(s.title) AS rank
+                FROM songs_fts f
+                JOIN songs s ON s.id = f.rowid
+                WHERE songs_fts MATCH ?
+            )
+            WHERE rank >= %d
+            %s
+            ORDER BY rank, title COLLATE NOCASE, id
+            LIMIT ?
+        """.formatted(SONG_COLUMNS, RANK_TIER, 2 * RANK_TIER, after == null ? "" : "AND (rank, title COLLATE NOCASE, id) > (?, ?, ?)");
+
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            String q = escapeLike(prefix);
+            int param = 1;
+            stmt.setString(param++, q + "%");
+            stmt.setString(param++, "% " + q + "%");
+            stmt.setString(param++, match);
+            param = bindRankKeyset(stmt, param, after);
+            stmt.setInt(param, limit);
+            readRanked(stmt, songs, ranks);
+        }
+    }
+
+    private static int bindRankKeyset(PreparedStatement stmt, int param, PageKey after) throws SQLException {
+        if (after == null) return param;
+        stmt.setLong(param++, after.rank());
+        stmt.setString(param++, after.title());
+        stmt.setInt(param++, after.id());
+        return param;
+    }
+
+    private static void readRanked(PreparedStatement stmt, List<Song> songs, List<Long> ranks) throws SQLException {
+        ResultSet rs = stmt.executeQuery();
+        while (rs.next()) {
+            songs.add(readSong(rs));
+            ranks.add(rs.getLong("rank"));
+        }
+    }
+
+    // The first string after every string starting with prefix: its last code point plus one
+    private static String prefixEnd(String prefix) {
+        int last = prefix.codePointBefore(prefix.length());
+        int next = last + 1 == Character.MIN_SURROGATE ? Character.MAX_SURROGATE + 1 : last + 1;
+        return new StringBuilder(prefix.substring(0, prefix.length() - Character.charCount(last)))
+                .appendCodePoint(next)
+                .toString();
+    }
+
+    // The whole catalog in title order, one page at a time; pass null for the first page
+    public static SongPage getSongsPage(PageKey after, int limit) {
+        // Full-catalog walks (index rebuilds) read each page once; caching them would only evict the UI's pages
+        SongPage page;
+        if (limit > MAX_CACHED_PAGE_SIZE) {
+            page = loadSongsPage(after, limit);
+        } else {
+            page = QueryCache.get("catalog-page:" + after + ":" + limit, Set.of(QueryCache.CATALOG_TAG),
+                    () -> loadSongsPage(after, limit));
+        }
+        return page == null ? new SongPage(List.of(), null) : page;
+    }
+
+    private static SongPage loadSongsPage(PageKey after, int limit) {
+        String sql = """
+            SELECT %s
+            FROM songs s
+            %s
+            ORDER BY s.title COLLATE NOCASE, s.id
+            LIMIT ?
+        """.formatted(SONG_COLUMNS, after == null ? "" : "WHERE " + TITLE_KEYSET);
+
+        try (Connection conn = DbManager.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            int param = 1;
+            if (after != null) param = bindTitleKeyset(stmt, param, after);
+            stmt.setInt(param, limit + 1);
+
+            return readPage(stmt, limit);
+
+        } catch (SQLException e) {
+            System.err.println("❌ Error fetching catalog page: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Songs of one artist, language or genre in title order, one page at a time
+    public static SongPage findSongsByCategoryPage(String categoryType, String value, PageKey after, int limit) {
+        String tag = QueryCache.categoryTag(categoryType, value);
+        SongPage page = QueryCache.get("category-page:" + tag + ":" + after + ":" + limit, Set.of(tag),
+                () -> loadSongsByCategoryPage(categoryType, value, after, limit));
+        return page == null ? new SongPage(List.of(), null) : page;
+    }
+
+    private static SongPage loadSongsByCategoryPage(String categoryType, String value, PageKey after, int limit) {
+        String[] join = categoryJoin(categoryType);
+        // Resolving the dimension id first lets idx_songs_*_title return rows already in order
+        String sql = """
+            SELECT %s
+            FROM songs s
+            WHERE s.%s = (SELECT id FROM %s WHERE LOWER(name) = ?)
+            %s
+            ORDER BY s.title COLLATE NOCASE, s.id
+            LIMIT ?
+        """.formatted(SONG_COLUMNS, join[1], join[0], after == null ? "" : "AND " + TITLE_KEYSET);
+
+        try (Connection conn = DbManager.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            int param = 1;
+            stmt.setString(param++, value.toLowerCase());
+            if (after != null) param = bindTitleKeyset(stmt, param, after);
+            stmt.setInt(param, limit + 1);
+
+            return readPage(stmt, limit);
+
+        } catch (SQLException e) {
+            System.err.println("❌ Category search error: " + e.getMessage());
+            return null;
+        }
     }
 
+    // Ids of the category's songs after a keyset position, to the end, in the same order as its pages
+    public static List<Integer> findSongIdsByCategoryAfter(String categoryType, String value, PageKey after) {
+        String[] join = categoryJoin(categoryType);
+        String sql = """
+            SELECT s.id
+            FROM songs s
+            WHERE s.%s = (SELECT id FROM %s WHERE LOWER(name) = ?)
+            AND %s
+            ORDER BY s.title COLLATE NOCASE, s.id
+        """.formatted(join[1], join[0], TITLE_KEYSET);
+
+        List<Integer> ids = new ArrayList<>();
+        try (Connection conn = DbManager.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setString(1, value.toLowerCase());
+            bindTitleKeyset(stmt, 2, after);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) ids.add(rs.getInt(1));
+
+        } catch (SQLException e) {
+            System.err.println("❌ Category search error: " + e.getMessage());
+            return List.of();
+        }
+        return ids;
+    }
+
+    // Reads up to limit rows; the extra (limit + 1)th row only signals that another page exists
+    private static SongPage readPage(PreparedStatement stmt, int limit) throws SQLException {
+        List<Song> songs = new ArrayList<>(limit);
+        boolean more = false;
+
+        ResultSet rs = stmt.executeQuery();
+        while (rs.next()) {
+            if (songs.size() == limit) {
+                more = true;
+                break;
+            }
+            songs.add(readSong(rs));
+        }
+
+        songs = List.copyOf(songs);
+        if (!more || songs.isEmpty()) return new SongPage(songs, null);
+        Song last = songs.get(songs.size() - 1);
+        return new SongPage(songs, new PageKey(0, last.title(), last.id()));
+    }
+
+    private static int bindTitleKeyset(PreparedStatement stmt, int param, PageKey after) throws SQLException {
+        stmt.setString(param++, after.title());
+        stmt.setString(param++, after.title());
+        stmt.setInt(param++, after.id());
+        return param;
+    }
+
+    // Turn free text into an FTS5 query where every word is a quoted prefix term
+    static String toMatchExpression(String query) {
+        if (query == null) return null;
+
+        StringBuilder match = new StringBuilder();
+        for (String token : query.toLowerCase().split("[^\\p{L}\\p{N}]+")) {
+            if (token.isEmpty()) continue;
+            if (match.length() > 0) match.append(' ');
+            match.append('"').append(token).append("\"*");
+        }
+        return match.length() == 0 ? null : match.toString();
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    // Dimension lists are served from the in-process caches rather than re-read each time
     public static List<String> getAllArtists() {
-        return fetchSingleColumnValues("artists");
+        return DimensionCache.ARTISTS.sortedNames();
     }
 
     public static List<String> getAllLanguages() {
-        return fetchSingleColumnValues("languages");
+        return DimensionCache.LANGUAGES.sortedNames();
     }
 
     public static List<String> getAllGenres() {
-        return fetchSingleColumnValues("genres");
+        return DimensionCache.GENRES.sortedNames();
     }
 
     public static List<Integer> findSongsByCategory(String categoryType, String value) {
+        String tag = QueryCache.categoryTag(categoryType, value);
+        List<Integer> ids = QueryCache.get("category-ids:" + tag, Set.of(tag), () -> loadSongsByCategory(categoryType, value));
+        return ids == null ? List.of() : ids;
+    }
+
+    private static List<Integer> loadSongsByCategory(String categoryType, String value) {
         List<Integer> ids = new ArrayList<>();
         String sql = """
             SELECT s.id FROM songs s
@@ -146,46 +515,114 @@ public class DbFinder {
 
         } catch (SQLException e) {
             System.err.println("❌ Category search error: " + e.getMessage());
+            return null;
         }
 
-        return ids;
+        return List.copyOf(ids);
     }
 
-    private static List<String> fetchSingleColumnValues(String tableName) {
-        List<String> values = new ArrayList<>();
-        String sql = "SELECT name FROM " + tableName + " ORDER BY name ASC";
+    // Dimension table and the songs column that references it
+    private static String[] categoryJoin(String categoryType) {
+        return switch (categoryType.toLowerCase()) {
+            case "artist" -> new String[]{"artists", "artist_id"};
+            case "language" -> new String[]{"languages", "language_id"};
+            case "genre" -> new String[]{"genres", "genre_id"};
+            default -> throw new IllegalArgumentException("Invalid category");
+        };
+    }
 
-        try (Connection conn = DbManager.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql);
-             ResultSet rs = stmt.executeQuery()) {
+    // Dimension names come from the caches, so rows need no joins and share their strings
+    static Song readSong(ResultSet rs) throws SQLException {
+        Connection conn = rs.getStatement().getConnection();
+        return new Song(
+                rs.getInt("id"),
+                rs.getString("title"),
+                DimensionCache.ARTISTS.nameOf(conn, rs.getInt("artist_id")),
+                DimensionCache.LANGUAGES.nameOf(conn, rs.getInt("language_id")),
+                DimensionCache.GENRES.nameOf(conn, rs.getInt("genre_id")),
+                rs.getFloat("rating"),
+                rs.getString("file_name")
+        );
+    }
 
-            while (rs.next()) {
-                values.add(rs.getString("name"));
+    /**
+     * Up to {@code count} song IDs drawn uniformly at random, with replacement, without reading
+     * the whole table. Random ids between MIN(id) and MAX(id) are probed through the rowid and the
+     * ones that hit a deleted row are thrown away, so a draw costs a few index lookups whatever
+     * the catalog size. Only a catalog with more gaps than rows falls back to the next existing
+     * id after the last probes, which favours songs that follow a gap.
+     */
+    public static List<Integer> randomSongIds(int count) {
+        List<Integer> ids = new ArrayList<>(count);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        try (Connection conn = DbManager.getConnection()) {
+            // Separate subqueries so each bound is one rowid seek, not a table scan
+            long min, max;
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT (SELECT MIN(id) FROM songs), (SELECT MAX(id) FROM songs)")) {
+                min = rs.getLong(1);
+                max = rs.getLong(2);
+                if (rs.wasNull()) return ids;
+            }
+
+            for (int round = 0; round < RANDOM_PROBE_ROUNDS && ids.size() < count; round++) {
+                // Ask for twice what is missing so a half-empty id range still fills in one round
+                int probes = Math.min(IN_CHUNK_SIZE, Math.max(16, 2 * (count - ids.size())));
+                String sql = "SELECT id FROM songs WHERE id IN (%s)"
+                        .formatted(String.join(",", Collections.nCopies(probes, "?")));
+                List<Long> drawn = new ArrayList<>(probes);
+                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                    for (int i = 1; i <= probes; i++) {
+                        long id = random.nextLong(min, max + 1);
+                        drawn.add(id);
+                        stmt.setLong(i, id);
+                    }
+                    Set<Long> existing = new HashSet<>();
+                    ResultSet rs = stmt.executeQuery();
+                    while (rs.next()) existing.add(rs.getLong(1));
+
+                    // IN returns each row once; keep the draw order and any repeats
+                    for (long id : drawn) {
+                        if (ids.size() < count && existing.contains(id)) ids.add((int) id);
+                    }
+                }
+            }
+
+            try (PreparedStatement stmt = conn.prepareStatement("SELECT id FROM songs WHERE id >= ? ORDER BY id LIMIT 1")) {
+                while (ids.size() < count) {
+                    stmt.setLong(1, random.nextLong(min, max + 1));
+                    ResultSet rs = stmt.executeQuery();
+                    if (!rs.next()) break;
+                    ids.add(rs.getInt(1));
+                }
             }
 
         } catch (SQLException e) {
-            System.err.println("❌ Error fetching from " + tableName + ": " + e.getMessage());
+            System.err.println("❌ Error sampling random songs: " + e.getMessage());
         }
 
-        return values;
+        return ids;
     }
 
-    public static List<Integer> getAllSongs() {
-        List<Integer> ids = new ArrayList<>();
-        String sql = "SELECT id FROM songs";
-    
+    public interface RatingVisitor {
+        void visit(int songId, double rating);
+    }
+
+    // Stream every song's rating in id order without building Song objects; false on error
+    public static boolean scanRatings(RatingVisitor visitor) {
         try (Connection conn = DbManager.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql);
-             ResultSet rs = stmt.executeQuery()) {
-    
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT id, rating FROM songs ORDER BY id")) {
+
             while (rs.next()) {
-                ids.add(rs.getInt("id"));
+                visitor.visit(rs.getInt(1), rs.getDouble(2));
             }
-    
+            return true;
+
         } catch (SQLException e) {
-            System.err.println("❌ Error fetching all song IDs: " + e.getMessage());
+            System.err.println("❌ Error reading song ratings: " + e.getMessage());
+            return false;
         }
-    
-        return ids;
     }
-}
\ No newline at end of file
+}
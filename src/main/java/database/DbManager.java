@@ -8,6 +8,10 @@ import java.sql.Statement;
 public class DbManager {
 
     private static final String DB_URL = "jdbc:sqlite:data/songs.db";
+    private static final int MAX_READERS = Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
+    private static final long ACQUIRE_TIMEOUT_MS = 10_000;
+
+    private static volatile ConnectionPool pool;
 
     // Connect to the SQLite DB with a success/fail message
     public static Connection connect() {
@@ -21,59 +25,56 @@ public class DbManager {
         }
     }
 
-    // Used silently by backend code
+    // Used silently by backend code: a pooled, read-only connection. close() returns it to the pool.
     public static Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(DB_URL);
+        return pool().acquireReader();
     }
 
-    // Create all necessary tables if they don't exist
-    public static void createSchemaIfNeeded() {
-        try (Connection conn = connect(); Statement stmt = conn.createStatement()) {
+    // The single write connection; callers are serialized until they close() it
+    public static Connection getWriteConnection() throws SQLException {
+        return pool().acquireWriter();
+    }
+
+    public static PoolStats getPoolStats() {
+        ConnectionPool current = pool;
+        return current == null ? new PoolStats(0, 0, MAX_READERS, false, 0, 0, 0, 0) : current.stats();
+    }
 
-            // Artists table
-            stmt.execute("""
-                CREATE TABLE IF NOT EXISTS artists (
-                    id INTEGER PRIMARY KEY AUTOINCREMENT,
-                    name TEXT NOT NULL UNIQUE
-                );
-            """);
+    // Close every pooled connection, e.g. when the application exits
+    public static synchronized void shutdown() {
+        if (pool != null) {
+            System.out.println("📊 Connection pool: " + pool.stats());
+            System.out.println("📊 Query cache: " + QueryCache.stats());
 
-            // Languages table
-            stmt.execute("""
-                CREATE TABLE IF NOT EXISTS languages (
-                    id INTEGER PRIMARY KEY AUTOINCREMENT,
-                    name TEXT NOT NULL UNIQUE
-                );
-            """);
+            // Refresh planner statistics for tables whose contents changed a lot this session
+            try (Connection conn = pool.acquireWriter(); Statement stmt = conn.createStatement()) {
+                stmt.execute("PRAGMA optimize");
+            } catch (SQLException e) {
+                System.err.println("⚠️ PRAGMA optimize skipped: " + e.getMessage());
+            }
 
-            // Genres table
-            stmt.execute("""
-                CREATE TABLE IF NOT EXISTS genres (
-                    id INTEGER PRIMARY KEY AUTOINCREMENT,
-                    name TEXT NOT NULL UNIQUE
-                );
-            """);
+            pool.close();
+            pool = null;
+        }
+    }
 
-            // Songs table
-            stmt.execute("""
-                CREATE TABLE IF NOT EXISTS songs (
-                    id INTEGER PRIMARY KEY AUTOINCREMENT,
-                    title TEXT NOT NULL,
-                    artist_id INTEGER NOT NULL,
-                    language_id INTEGER NOT NULL,
-                    genre_id INTEGER NOT NULL,
-                    rating REAL,
-                    file_name TEXT NOT NULL,
-                    FOREIGN KEY (artist_id) REFERENCES artists(id),
-                    FOREIGN KEY (language_id) REFERENCES languages(id),
-                    FOREIGN KEY (genre_id) REFERENCES genres(id)
-                );
-            """);
+    private static ConnectionPool pool() throws SQLException {
+        ConnectionPool current = pool;
+        if (current != null) return current;
 
-            System.out.println("✅ Database schema created or already exists.");
+        synchronized (DbManager.class) {
+            if (pool == null) pool = new ConnectionPool(DB_URL, MAX_READERS, ACQUIRE_TIMEOUT_MS);
+            return pool;
+        }
+    }
 
+    // Create the schema or upgrade an older songs.db in place
+    public static void createSchemaIfNeeded() {
+        try (Connection conn = getWriteConnection()) {
+            int version = SchemaMigrator.migrate(conn);
+            System.out.println("✅ Database schema is up to date (version " + version + ").");
         } catch (SQLException e) {
             System.err.println("❌ Error creating schema: " + e.getMessage());
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,178 @@
+package database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process name ↔ id dictionary for one of the dimension tables (artists, languages, genres).
+ * The table is read once on first use; after that every write path in this package keeps the
+ * cache in step, so lookups never touch SQLite. Reads are lock-free, mutations are serialized.
+ */
+public class DimensionCache {
+
+    public static final DimensionCache ARTISTS = new DimensionCache("artists");
+    public static final DimensionCache LANGUAGES = new DimensionCache("languages");
+    public static final DimensionCache GENRES = new DimensionCache("genres");
+
+    public record Stats(String table, int size, long hits, long misses) {
+        public double hitRatio() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+    }
+
+    private final String table;
+    private final Map<String, Integer> idsByName = new ConcurrentHashMap<>();
+    private final Map<Integer, String> namesById = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private volatile boolean loaded;
+    private volatile List<String> sortedNames;
+
+    private DimensionCache(String table) {
+        this.table = table;
+    }
+
+    public static DimensionCache forTable(String table) {
+        return switch (table) {
+            case "artists" -> ARTISTS;
+            case "languages" -> LANGUAGES;
+            case "genres" -> GENRES;
+            default -> throw new IllegalArgumentException("Unknown dimension table: " + table);
+        };
+    }
+
+    public static List<Stats> allStats() {
+        return List.of(ARTISTS.stats(), LANGUAGES.stats(), GENRES.stats());
+    }
+
+    // Exact-name lookup; null when the name is not in the table
+    public Integer idOf(String name) {
+        ensureLoaded();
+        Integer id = idsByName.get(name);
+        (id != null ? hits : misses).increment();
+        return id;
+    }
+
+    /**
+     * Read-through: an id the cache has not seen yet is fetched once and remembered. A miss reads
+     * on conn, the caller's connection, so a reader never holds two pooled connections at once.
+     */
+    public String nameOf(Connection conn, int id) {
+        ensureLoaded(conn);
+        String name = namesById.get(id);
+        if (name != null) {
+            hits.increment();
+            return name;
+        }
+
+        misses.increment();
+        String sql = "SELECT name FROM " + table + " WHERE id = ?";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setInt(1, id);
+            ResultSet rs = stmt.executeQuery();
+            if (!rs.next()) return null;
+
+            name = rs.getString("name");
+            put(id, name);
+            return namesById.getOrDefault(id, name);
+
+        } catch (SQLException e) {
+            System.err.println("❌ Error reading " + table + " #" + id + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    // All names in the same order as "ORDER BY name ASC"
+    public List<String> sortedNames() {
+        ensureLoaded();
+        List<String> names = sortedNames;
+        if (names == null) {
+            // Rebuilt under the lock mutations take, so a list from before a put or remove never replaces their null
+            synchronized (this) {
+                names = sortedNames;
+                if (names == null) {
+                    List<String> fresh = new ArrayList<>(idsByName.keySet());
+                    fresh.sort(null);
+                    names = List.copyOf(fresh);
+                    sortedNames = names;
+                }
+            }
+        }
+        hits.increment();
+        return names;
+    }
+
+    public Stats stats() {
+        return new Stats(table, namesById.size(), hits.sum(), misses.sum());
+    }
+
+    // Record a row that has been committed by one of the write paths
+    synchronized void put(int id, String name) {
+        if (!loaded) return;
+        idsByName.put(name, id);
+        namesById.put(id, name);
+        sortedNames = null;
+    }
+
+    // Forget a row removed by orphan cleanup
+    synchronized void remove(int id) {
+        if (!loaded) return;
+        String name = namesById.remove(id);
+        if (name != null) idsByName.remove(name, id);
+        sortedNames = null;
+    }
+
+    // Drop everything, e.g. after a rollback of unknown extent; reloaded on next use
+    synchronized void invalidate() {
+        loaded = false;
+        idsByName.clear();
+        namesById.clear();
+        sortedNames = null;
+    }
+
+    private void ensureLoaded() {
+        if (loaded) return;
+
+        try (Connection conn = DbManager.getConnection()) {
+            ensureLoaded(conn);
+        } catch (SQLException e) {
+            System.err.println("❌ Error loading " + table + " cache: " + e.getMessage());
+        }
+    }
+
+    private void ensureLoaded(Connection conn) {
+        if (loaded) return;
+
+        synchronized (this) {
+            if (loaded) return;
+
+            String sql = "SELECT id, name FROM " + table;
+            try (PreparedStatement stmt = conn.prepareStatement(sql);
+                 ResultSet rs = stmt.executeQuery()) {
+
+                while (rs.next()) {
+                    int id = rs.getInt("id");
+                    String name = rs.getString("name");
+                    idsByName.put(name, id);
+                    namesById.put(id, name);
+                }
+                loaded = true;
+
+            } catch (SQLException e) {
+                idsByName.clear();
+                namesById.clear();
+                System.err.println("❌ Error loading " + table + " cache: " + e.getMessage());
+            }
+        }
+    }
+}
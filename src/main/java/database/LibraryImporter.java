@@ -0,0 +1,337 @@
+package database;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Database side of a library scan. Each batch of scanned files is written in one transaction:
+ * songs already pointing at a file get its stream facts, files no song points at become new songs,
+ * and the file's size and mtime are recorded in {@code library_files} so the next scan can tell
+ * it has not changed. Search indexing is suspended for the batch as in {@link CsvImporter}.
+ */
+public class LibraryImporter {
+
+    private static final String[] DIMENSIONS = {"artists", "languages", "genres"};
+    private static final int IN_CHUNK_SIZE = 500;
+    // Above this many new songs, listeners are told to rebuild rather than sent every id
+    private static final int RELOAD_THRESHOLD = 1000;
+
+    // What LibraryScanner read from one file; text fields are never null
+    public record ScannedFile(String path, long size, long modifiedMillis,
+                              String title, String artist, String language, String genre,
+                              long durationMillis, int bitrateKbps) {}
+
+    public record FileStamp(long size, long modifiedMillis) {}
+
+    public record FileHash(String path, FileStamp stamp, long audioHash) {}
+
+    private static final List<Runnable> recordedListeners = new CopyOnWriteArrayList<>();
+
+    private final List<Integer> addedIds = new ArrayList<>();
+    private int updated;
+    private int recorded;
+
+    public int added() {
+        return addedIds.size();
+    }
+
+    public int updated() {
+        return updated;
+    }
+
+    // Run after a scan has recorded new or changed files, which have no loudness yet
+    public static void addRecordedListener(Runnable listener) {
+        recordedListeners.add(listener);
+    }
+
+    // Every recorded file whose path starts with prefix
+    public static Map<String, FileStamp> loadManifest(String prefix) {
+        Map<String, FileStamp> manifest = new HashMap<>();
+        String sql = "SELECT path, size, modified_ms FROM library_files WHERE path >= ? AND path < ?";
+        try (Connection conn = DbManager.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setString(1, prefix);
+            stmt.setString(2, prefix + Character.MAX_VALUE);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                manifest.put(rs.getString("path"), new FileStamp(rs.getLong("size"), rs.getLong("modified_ms")));
+            }
+        } catch (SQLException e) {
+            System.err.println("❌ Failed to load library manifest: " + e.getMessage());
+        }
+        return manifest;
+    }
+
+    // The recorded stamps of just these paths; paths never scanned are absent
+    public static Map<String, FileStamp> loadStamps(Collection<String> paths) {
+        List<String> keys = new ArrayList<>(new HashSet<>(paths));
+        Map<String, FileStamp> stamps = new HashMap<>();
+
+        try (Connection conn = DbManager.getConnection()) {
+            for (int from = 0; from < keys.size(); from += IN_CHUNK_SIZE) {
+                List<String> chunk = keys.subList(from, Math.min(from + IN_CHUNK_SIZE, keys.size()));
+                String sql = "SELECT path, size, modified_ms FROM library_files WHERE path IN (%s)"
+                        .formatted(String.join(",", Collections.nCopies(chunk.size(), "?")));
+
+                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                    for (int i = 0; i < chunk.size(); i++) stmt.setString(i + 1, chunk.get(i));
+                    ResultSet rs = stmt.executeQuery();
+                    while (rs.next()) {
+                        stamps.put(rs.getString("path"), new FileStamp(rs.getLong("size"), rs.getLong("modified_ms")));
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("❌ Failed to load library manifest: " + e.getMessage());
+        }
+        return stamps;
+    }
+
+    // Indexed files under prefix whose audio has not been hashed since they were last recorded
+    public static Map<String, FileStamp> loadUnhashed(String prefix) {
+        Map<String, FileStamp> unhashed = new HashMap<>();
+        String sql = "SELECT path, size, modified_ms FROM library_files WHERE path >= ? AND path < ? AND audio_hash IS NULL";
+        try (Connection conn = DbManager.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setString(1, prefix);
+            stmt.setString(2, prefix + Character.MAX_VALUE);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                unhashed.put(rs.getString("path"), new FileStamp(rs.getLong("size"), rs.getLong("modified_ms")));
+            }
+        } catch (SQLException e) {
+            System.err.println("❌ Failed to load unhashed files: " + e.getMessage());
+        }
+        return unhashed;
+    }
+
+    // Indexed files under prefix that have not been analysed for loudness since they were last recorded
+    public static Map<String, FileStamp> loadUnanalyzed(String prefix) {
+        Map<String, FileStamp> unanalyzed = new HashMap<>();
+        String sql = "SELECT path, size, modified_ms FROM library_files WHERE path >= ? AND path < ? AND gain_db IS NULL";
+        try (Connection conn = DbManager.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setString(1, prefix);
+            stmt.setString(2, prefix + Character.MAX_VALUE);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                unanalyzed.put(rs.getString("path"), new FileStamp(rs.getLong("size"), rs.getLong("modified_ms")));
+            }
+        } catch (SQLException e) {
+            System.err.println("❌ Failed to load unanalysed files: " + e.getMessage());
+        }
+        return unanalyzed;
+    }
+
+    /**
+     * Store one file's loudness; loudness is null for a silent file. Dropped when the file has been
+     * recorded again with another size or mtime since it was analysed.
+     */
+    public static boolean storeLoudness(String path, FileStamp stamp, Double loudnessLufs, double peak, double gainDb) {
+        String sql = """
+            UPDATE library_files SET loudness_lufs = ?, peak = ?, gain_db = ?
+            WHERE path = ? AND size = ? AND modified_ms = ?
+        """;
+        try (Connection conn = DbManager.getWriteConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            if (loudnessLufs == null) stmt.setNull(1, Types.REAL);
+            else stmt.setDouble(1, loudnessLufs);
+            stmt.setDouble(2, peak);
+            stmt.setDouble(3, gainDb);
+            stmt.setString(4, path);
+            stmt.setLong(5, stamp.size());
+            stmt.setLong(6, stamp.modifiedMillis());
+            return stmt.executeUpdate() > 0;
+
+        } catch (SQLException e) {
+            System.err.println("❌ Failed to store loudness of " + path + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Store audio hashes in one transaction. A hash is dropped when its file has been recorded
+     * again with another size or mtime since it was read.
+     *
+     * @return number of hashes stored
+     */
+    public static int storeHashes(List<FileHash> hashes) {
+        if (hashes.isEmpty()) return 0;
+        String sql = "UPDATE library_files SET audio_hash = ? WHERE path = ? AND size = ? AND modified_ms = ?";
+        try (Connection conn = DbManager.getWriteConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            conn.setAutoCommit(false);
+            for (FileHash hash : hashes) {
+                stmt.setLong(1, hash.audioHash());
+                stmt.setString(2, hash.path());
+                stmt.setLong(3, hash.stamp().size());
+                stmt.setLong(4, hash.stamp().modifiedMillis());
+                stmt.addBatch();
+            }
+            int stored = 0;
+            for (int count : stmt.executeBatch()) stored += Math.max(count, 0);
+            conn.commit();
+            return stored;
+
+        } catch (SQLException e) {
+            System.err.println("❌ Failed to store " + hashes.size() + " audio hash(es): " + e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * Write one batch in a single transaction.
+     *
+     * @return false when the transaction failed and nothing in the batch was written
+     */
+    public boolean apply(List<ScannedFile> batch) {
+        if (batch.isEmpty()) return true;
+
+        List<Integer> addedHere = new ArrayList<>();
+        int updatedHere = 0;
+        Set<String> tags = new HashSet<>();
+
+        try (Connection conn = DbManager.getWriteConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement find = conn.prepareStatement("SELECT id FROM songs WHERE file_name = ?");
+                 PreparedStatement update = conn.prepareStatement(
+                         "UPDATE songs SET duration_ms = ?, bitrate_kbps = ? WHERE id = ?");
+                 PreparedStatement insert = conn.prepareStatement("""
+                     INSERT INTO songs (title, artist_id, language_id, genre_id, rating, file_name, duration_ms, bitrate_kbps)
+                     VALUES (?, ?, ?, ?, 0, ?, ?, ?)
+                 """);
+                 PreparedStatement record = conn.prepareStatement(
+                         "INSERT OR REPLACE INTO library_files (path, size, modified_ms) VALUES (?, ?, ?)")) {
+
+                long lastId = SearchIndexSync.suspend(conn);
+                for (ScannedFile file : batch) {
+                    List<Integer> existing = new ArrayList<>();
+                    find.setString(1, file.path());
+                    ResultSet rs = find.executeQuery();
+                    while (rs.next()) existing.add(rs.getInt(1));
+
+                    if (!existing.isEmpty()) {
+                        // Titles and categories may have been edited by hand; only the stream facts are refreshed
+                        for (int id : existing) {
+                            update.setLong(1, file.durationMillis());
+                            update.setInt(2, file.bitrateKbps());
+                            update.setInt(3, id);
+                            update.addBatch();
+                        }
+                        updatedHere += existing.size();
+                    } else {
+                        String title = DbAssist.formatText(file.title());
+                        String artist = DbAssist.formatText(file.artist());
+                        String language = DbAssist.formatText(file.language());
+                        String genre = DbAssist.formatText(file.genre());
+                        int artistId = DbAssist.getOrCreateId(conn, "artists", artist);
+                        int languageId = DbAssist.getOrCreateId(conn, "languages", language);
+                        int genreId = DbAssist.getOrCreateId(conn, "genres", genre);
+                        if (artistId == -1 || languageId == -1 || genreId == -1) {
+                            throw new SQLException("could not resolve artist, language or genre of " + file.path());
+                        }
+
+                        insert.setString(1, title);
+                        insert.setInt(2, artistId);
+                        insert.setInt(3, languageId);
+                        insert.setInt(4, genreId);
+                        insert.setString(5, file.path());
+                        insert.setLong(6, file.durationMillis());
+                        insert.setInt(7, file.bitrateKbps());
+                        insert.addBatch();
+                        tags.add(QueryCache.titleTag(title));
+                        tags.add(QueryCache.categoryTag("artist", artist));
+                        tags.add(QueryCache.categoryTag("language", language));
+                        tags.add(QueryCache.categoryTag("genre", genre));
+                    }
+
+                    record.setString(1, file.path());
+                    record.setLong(2, file.size());
+                    record.setLong(3, file.modifiedMillis());
+                    record.addBatch();
+                }
+
+                update.executeBatch();
+                insert.executeBatch();
+                try (PreparedStatement inserted = conn.prepareStatement("SELECT id FROM songs WHERE id > ?")) {
+                    inserted.setLong(1, lastId);
+                    ResultSet rs = inserted.executeQuery();
+                    while (rs.next()) addedHere.add(rs.getInt(1));
+                }
+                SearchIndexSync.indexSince(conn, lastId);
+                record.executeBatch();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                // getOrCreateId may have cached ids of dimension rows that were just rolled back
+                for (String table : DIMENSIONS) DimensionCache.forTable(table).invalidate();
+                throw e;
+            }
+
+        } catch (SQLException e) {
+            System.err.println("❌ Failed to index " + batch.size() + " scanned file(s): " + e.getMessage());
+            return false;
+        }
+
+        if (!addedHere.isEmpty()) {
+            tags.add(QueryCache.CATALOG_TAG);
+            QueryCache.invalidate(tags);
+        }
+        addedIds.addAll(addedHere);
+        updated += updatedHere;
+        recorded += batch.size();
+        return true;
+    }
+
+    // Drop the manifest entries of files that are gone, once LibraryScanner has deleted their songs
+    public static int forget(Collection<String> paths) {
+        if (paths.isEmpty()) return 0;
+        try (Connection conn = DbManager.getWriteConnection();
+             PreparedStatement stmt = conn.prepareStatement("DELETE FROM library_files WHERE path = ?")) {
+
+            conn.setAutoCommit(false);
+            for (String path : paths) {
+                stmt.setString(1, path);
+                stmt.addBatch();
+            }
+            int removed = 0;
+            for (int count : stmt.executeBatch()) removed += Math.max(count, 0);
+            conn.commit();
+            return removed;
+
+        } catch (SQLException e) {
+            System.err.println("❌ Failed to forget removed files: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    // Tell catalog views about the new songs, and file listeners about the new files, once everything is written
+    public void finish() {
+        if (!addedIds.isEmpty()) {
+            DbAssist.fireChange(addedIds.size() > RELOAD_THRESHOLD
+                    ? CatalogChange.reload()
+                    : CatalogChange.upserted(addedIds));
+        }
+        if (recorded == 0) return;
+        for (Runnable listener : recordedListeners) {
+            try {
+                listener.run();
+            } catch (RuntimeException e) {
+                System.err.println("⚠️ Library file listener failed: " + e.getMessage());
+            }
+        }
+    }
+}
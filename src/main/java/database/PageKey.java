@@ -0,0 +1,9 @@
+package database;
+
+/**
+ * Keyset cursor: the sort key of the last row of a page. The next page starts strictly
+ * after it, so paging costs the same on page 1 and page 10,000. {@code rank} is only used by
+ * ranked search results and is 0 for title-ordered listings.
+ */
+public record PageKey(long rank, String title, int id) {
+}
@@ -0,0 +1,311 @@
+package database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * What was played, with write-behind. {@link #record} only appends to a lock-free queue, so the
+ * playback path never waits on SQLite; one background thread drains the queue every
+ * {@link #FLUSH_MILLIS} ms, or as soon as {@link #FLUSH_BATCH} events are waiting, and writes them
+ * in one transaction: the raw rows into {@code play_events} and per-song counts for each UTC day
+ * folded into {@code song_play_days}, which is what play counts are read from. Events still queued
+ * at exit are written by {@link #shutdown()}; those for songs deleted in the meantime are dropped.
+ */
+public class PlayHistory {
+
+    public enum Kind { START, FINISH, SKIP }
+
+    public record Event(int songId, Kind kind, long atMillis, long positionMillis) {}
+
+    public record SongPlays(Song song, int plays) {}
+
+    public interface EventVisitor {
+        void visit(long eventId, int songId, Kind kind, long atMillis, long positionMillis);
+    }
+
+    public record Stats(long recorded, long written, long dropped, long flushes, int queued, double avgFlushMillis) {
+        @Override
+        public String toString() {
+            return "%d recorded, %d written, %d dropped, %d queued, %d flushes (avg %.2f ms)"
+                    .formatted(recorded, written, dropped, queued, flushes, avgFlushMillis);
+        }
+    }
+
+    private record DayKey(long day, int songId) {}
+
+    private static final long FLUSH_MILLIS = 5_000;
+    private static final int FLUSH_BATCH = 256;
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000;
+    private static final int WEEK_DAYS = 7;
+
+    private static final Queue<Event> pending = new ConcurrentLinkedQueue<>();
+    // Size of pending; ConcurrentLinkedQueue.size() walks the whole queue
+    private static final AtomicInteger queued = new AtomicInteger();
+    private static final AtomicBoolean flushRequested = new AtomicBoolean();
+    private static final AtomicBoolean started = new AtomicBoolean();
+
+    private static final List<Runnable> flushListeners = new CopyOnWriteArrayList<>();
+
+    private static final LongAdder recorded = new LongAdder();
+    private static final AtomicLong written = new AtomicLong();
+    private static final AtomicLong dropped = new AtomicLong();
+    private static final AtomicLong flushes = new AtomicLong();
+    private static final AtomicLong flushNanos = new AtomicLong();
+
+    private static final ScheduledThreadPoolExecutor FLUSHER = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "play-history");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private PlayHistory() {
+    }
+
+    // Never blocks; safe to call from the JavaFX thread
+    public static void record(int songId, Kind kind, long positionMillis) {
+        pending.offer(new Event(songId, kind, System.currentTimeMillis(), Math.max(0, positionMillis)));
+        recorded.increment();
+        int waiting = queued.incrementAndGet();
+        try {
+            if (started.compareAndSet(false, true)) {
+                FLUSHER.scheduleWithFixedDelay(PlayHistory::flush, FLUSH_MILLIS, FLUSH_MILLIS, TimeUnit.MILLISECONDS);
+            }
+            if (waiting >= FLUSH_BATCH && flushRequested.compareAndSet(false, true)) {
+                FLUSHER.execute(PlayHistory::flush);
+            }
+        } catch (RejectedExecutionException e) {
+            // Shutting down; shutdown() writes what is queued
+        }
+    }
+
+    // Songs by how often they were started since the start of the UTC day holding sinceMillis, most played first
+    public static List<SongPlays> mostPlayedSince(long sinceMillis, int limit) {
+        String sql = """
+            SELECT song_id, SUM(plays) AS plays
+            FROM song_play_days
+            WHERE day >= ?
+            GROUP BY song_id
+            HAVING SUM(plays) > 0
+            ORDER BY plays DESC, song_id
+            LIMIT ?
+        """;
+        Map<Integer, Integer> plays = new HashMap<>();
+        List<Integer> ids = new ArrayList<>();
+        try (Connection conn = DbManager.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setLong(1, sinceMillis / DAY_MILLIS);
+            stmt.setInt(2, limit);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                ids.add(rs.getInt("song_id"));
+                plays.put(rs.getInt("song_id"), rs.getInt("plays"));
+            }
+        } catch (SQLException e) {
+            System.err.println("❌ Error fetching most played songs: " + e.getMessage());
+            return List.of();
+        }
+
+        List<SongPlays> result = new ArrayList<>();
+        for (Song song : DbFinder.searchSongs(ids)) {
+            result.add(new SongPlays(song, plays.get(song.id())));
+        }
+        result.sort((a, b) -> Integer.compare(b.plays(), a.plays()));
+        return result;
+    }
+
+    // Today and the six days before it
+    public static List<SongPlays> mostPlayedThisWeek(int limit) {
+        return mostPlayedSince(System.currentTimeMillis() - (WEEK_DAYS - 1) * DAY_MILLIS, limit);
+    }
+
+    // Run on the flusher thread after each batch of events is committed
+    public static void addFlushListener(Runnable listener) {
+        flushListeners.add(listener);
+    }
+
+    /**
+     * Stream every event after afterEventId in the order recorded, without holding them all.
+     *
+     * @return false when the read failed
+     */
+    public static boolean scanEvents(long afterEventId, EventVisitor visitor) {
+        String sql = "SELECT id, song_id, kind, at_ms, position_ms FROM play_events WHERE id > ? ORDER BY id";
+        try (Connection conn = DbManager.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setLong(1, afterEventId);
+            stmt.setFetchSize(1000);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                visitor.visit(rs.getLong(1), rs.getInt(2), Kind.valueOf(rs.getString(3)), rs.getLong(4), rs.getLong(5));
+            }
+            return true;
+
+        } catch (SQLException | IllegalArgumentException e) {
+            System.err.println("❌ Error reading play events: " + e.getMessage());
+            return false;
+        }
+    }
+
+    public static Stats stats() {
+        long count = flushes.get();
+        return new Stats(recorded.sum(), written.get(), dropped.get(), count, queued.get(),
+                count == 0 ? 0 : flushNanos.get() / 1e6 / count);
+    }
+
+    // Write whatever is still queued and stop the timer; call before DbManager.shutdown()
+    public static void shutdown() {
+        FLUSHER.shutdown();
+        try {
+            FLUSHER.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        System.out.println("📊 Play history: " + stats());
+    }
+
+    // History of songs being deleted, inside the transaction that deletes them
+    static void forgetSongs(Connection conn, List<Integer> songIds) throws SQLException {
+        String placeholders = String.join(",", Collections.nCopies(songIds.size(), "?"));
+        for (String table : List.of("play_events", "song_play_days")) {
+            String sql = "DELETE FROM %s WHERE song_id IN (%s)".formatted(table, placeholders);
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                for (int i = 0; i < songIds.size(); i++) stmt.setInt(i + 1, songIds.get(i));
+                stmt.executeUpdate();
+            }
+        }
+    }
+
+    // Hand the history of duplicates being merged to the song kept, inside the merge transaction
+    static void mergeSongs(Connection conn, int keepId, List<Integer> duplicateIds) throws SQLException {
+        String placeholders = String.join(",", Collections.nCopies(duplicateIds.size(), "?"));
+        String moveEvents = "UPDATE play_events SET song_id = ? WHERE song_id IN (%s)".formatted(placeholders);
+        String foldTotals = """
+            INSERT INTO song_play_days (day, song_id, plays, finishes, skips)
+            SELECT day, ?, SUM(plays), SUM(finishes), SUM(skips)
+            FROM song_play_days WHERE song_id IN (%s) GROUP BY day
+            ON CONFLICT (day, song_id) DO UPDATE SET
+                plays = plays + excluded.plays,
+                finishes = finishes + excluded.finishes,
+                skips = skips + excluded.skips
+        """.formatted(placeholders);
+
+        for (String sql : List.of(moveEvents, foldTotals)) {
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setInt(1, keepId);
+                for (int i = 0; i < duplicateIds.size(); i++) stmt.setInt(i + 2, duplicateIds.get(i));
+                stmt.executeUpdate();
+            }
+        }
+        forgetSongs(conn, duplicateIds);
+    }
+
+    // Only ever runs on the flusher thread, or after it has stopped
+    private static synchronized void flush() {
+        flushRequested.set(false);
+        List<Event> batch = new ArrayList<>();
+        Event event;
+        while ((event = pending.poll()) != null) batch.add(event);
+        queued.addAndGet(-batch.size());
+        if (batch.isEmpty()) return;
+
+        long start = System.nanoTime();
+        int count = 0;
+        try {
+            count = write(batch);
+            written.addAndGet(count);
+        } catch (SQLException e) {
+            dropped.addAndGet(batch.size());
+            System.err.println("❌ Failed to write " + batch.size() + " play event(s): " + e.getMessage());
+        }
+        flushes.incrementAndGet();
+        flushNanos.addAndGet(System.nanoTime() - start);
+
+        if (count == 0) return;
+        for (Runnable listener : flushListeners) {
+            try {
+                listener.run();
+            } catch (RuntimeException e) {
+                System.err.println("⚠️ Play history listener failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private static int write(List<Event> batch) throws SQLException {
+        // Counts per song and day first, so each row is updated once per batch
+        Map<DayKey, long[]> totals = new HashMap<>();
+        for (Event event : batch) {
+            long[] total = totals.computeIfAbsent(new DayKey(event.atMillis() / DAY_MILLIS, event.songId()),
+                    key -> new long[Kind.values().length]);
+            total[event.kind().ordinal()]++;
+        }
+
+        String insertEvent = """
+            INSERT INTO play_events (song_id, kind, at_ms, position_ms)
+            SELECT ?, ?, ?, ? WHERE EXISTS (SELECT 1 FROM songs WHERE id = ?)
+        """;
+        String upsertTotals = """
+            INSERT INTO song_play_days (day, song_id, plays, finishes, skips)
+            SELECT ?, ?, ?, ?, ? WHERE EXISTS (SELECT 1 FROM songs WHERE id = ?)
+            ON CONFLICT (day, song_id) DO UPDATE SET
+                plays = plays + excluded.plays,
+                finishes = finishes + excluded.finishes,
+                skips = skips + excluded.skips
+        """;
+
+        int inserted = 0;
+        try (Connection conn = DbManager.getWriteConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement events = conn.prepareStatement(insertEvent);
+                 PreparedStatement stats = conn.prepareStatement(upsertTotals)) {
+
+                for (Event event : batch) {
+                    events.setInt(1, event.songId());
+                    events.setString(2, event.kind().name());
+                    events.setLong(3, event.atMillis());
+                    events.setLong(4, event.positionMillis());
+                    events.setInt(5, event.songId());
+                    events.addBatch();
+                }
+                for (int count : events.executeBatch()) inserted += Math.max(0, count);
+
+                for (Map.Entry<DayKey, long[]> entry : totals.entrySet()) {
+                    long[] total = entry.getValue();
+                    stats.setLong(1, entry.getKey().day());
+                    stats.setInt(2, entry.getKey().songId());
+                    stats.setLong(3, total[Kind.START.ordinal()]);
+                    stats.setLong(4, total[Kind.FINISH.ordinal()]);
+                    stats.setLong(5, total[Kind.SKIP.ordinal()]);
+                    stats.setInt(6, entry.getKey().songId());
+                    stats.addBatch();
+                }
+                stats.executeBatch();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+        dropped.addAndGet(batch.size() - inserted);
+        return inserted;
+    }
+}
@@ -0,0 +1,22 @@
+package database;
+
+/**
+ * Point-in-time snapshot of the connection pool, for diagnostics.
+ */
+public record PoolStats(
+        int activeReaders,
+        int idleReaders,
+        int maxReaders,
+        boolean writerBusy,
+        int writersWaiting,
+        long acquisitions,
+        double avgWaitMillis,
+        double maxWaitMillis
+) {
+    @Override
+    public String toString() {
+        return "readers %d active / %d idle (max %d), writer %s (%d waiting), %d acquisitions, wait avg %.3f ms / max %.3f ms"
+                .formatted(activeReaders, idleReaders, maxReaders, writerBusy ? "busy" : "free",
+                        writersWaiting, acquisitions, avgWaitMillis, maxWaitMillis);
+    }
+}
@@ -0,0 +1,198 @@
+package database;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read-through cache for {@link DbFinder} results. Entries are evicted least-recently-used once
+ * their estimated size passes {@link #MAX_BYTES}, and expire after {@link #TTL_MINUTES}. Every
+ * entry carries tags naming the rows it was built from (a song id, a title, an artist, language
+ * or genre, or the whole catalog), and the write paths in {@link DbAssist} and
+ * {@link CsvImporter} invalidate exactly the tags they touched once their transaction commits.
+ */
+public class QueryCache {
+
+    public record Stats(int entries, long estimatedBytes, long maxBytes, long hits, long misses,
+                        long evictions, long expirations, long invalidations) {
+        public double hitRatio() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+
+        @Override
+        public String toString() {
+            return "%d entries, ~%.1f of %.0f MB, hit ratio %.1f%% (%d hits / %d misses), %d evicted, %d expired, %d invalidated"
+                    .formatted(entries, estimatedBytes / 1048576.0, maxBytes / 1048576.0, hitRatio() * 100,
+                            hits, misses, evictions, expirations, invalidations);
+        }
+    }
+
+    interface Loader<T> {
+        // null means the read failed; it is passed through and not cached
+        T load();
+    }
+
+    static final String CATALOG_TAG = "catalog";
+
+    private static final long MAX_BYTES = 32L * 1024 * 1024;
+    private static final long TTL_MINUTES = 10;
+    private static final long TTL_NANOS = TimeUnit.MINUTES.toNanos(TTL_MINUTES);
+
+    private record Entry(Object value, Set<String> tags, long bytes, long expiresAt) {}
+
+    private static final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private static final Map<String, Set<String>> keysByTag = new HashMap<>();
+
+    private static long bytes;
+    private static long hits;
+    private static long misses;
+    private static long evictions;
+    private static long expirations;
+    private static long invalidations;
+
+    // Bumped by every invalidation so a load that raced with a write is not stored
+    private static long generation;
+
+    private QueryCache() {
+    }
+
+    static String songTag(int id) {
+        return "song:" + id;
+    }
+
+    static String titleTag(String title) {
+        return "title:" + title.toLowerCase();
+    }
+
+    // categoryType is "artist", "language" or "genre"
+    static String categoryTag(String categoryType, String name) {
+        return categoryType.toLowerCase(Locale.ROOT) + ":" + name.toLowerCase();
+    }
+
+    static <T> T get(String key, Set<String> tags, Loader<T> loader) {
+        long seen;
+        synchronized (QueryCache.class) {
+            Object cached = lookup(key);
+            if (cached != null) {
+                @SuppressWarnings("unchecked")
+                T value = (T) cached;
+                return value;
+            }
+            seen = generation;
+        }
+
+        T value = loader.load();
+        if (value != null) put(key, tags, value, seen);
+        return value;
+    }
+
+    // Counts a hit or a miss; null when the key is absent or expired
+    static synchronized Object lookup(String key) {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.expiresAt() - System.nanoTime() > 0) {
+            hits++;
+            return entry.value();
+        }
+        if (entry != null) {
+            remove(key);
+            expirations++;
+        }
+        misses++;
+        return null;
+    }
+
+    static synchronized long generation() {
+        return generation;
+    }
+
+    // Store a value loaded after generation() returned `seen`, unless a write came in between
+    static synchronized void put(String key, Set<String> tags, Object value, long seen) {
+        long size = estimateBytes(value);
+        if (generation != seen || size > MAX_BYTES / 8) return;
+
+        remove(key);
+        entries.put(key, new Entry(value, tags, size, System.nanoTime() + TTL_NANOS));
+        bytes += size;
+        for (String tag : tags) {
+            keysByTag.computeIfAbsent(tag, t -> new HashSet<>()).add(key);
+        }
+
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while (bytes > MAX_BYTES && eldest.hasNext()) {
+            Map.Entry<String, Entry> victim = eldest.next();
+            eldest.remove();
+            forget(victim.getKey(), victim.getValue());
+            evictions++;
+        }
+    }
+
+    static synchronized void invalidate(Collection<String> tags) {
+        generation++;
+        for (String tag : tags) {
+            Set<String> keys = keysByTag.remove(tag);
+            if (keys == null) continue;
+            for (String key : keys) {
+                if (remove(key)) invalidations++;
+            }
+        }
+    }
+
+    static synchronized void clear() {
+        generation++;
+        invalidations += entries.size();
+        entries.clear();
+        keysByTag.clear();
+        bytes = 0;
+    }
+
+    public static synchronized Stats stats() {
+        return new Stats(entries.size(), bytes, MAX_BYTES, hits, misses, evictions, expirations, invalidations);
+    }
+
+    private static boolean remove(String key) {
+        Entry entry = entries.remove(key);
+        if (entry == null) return false;
+        forget(key, entry);
+        return true;
+    }
+
+    private static void forget(String key, Entry entry) {
+        bytes -= entry.bytes();
+        for (String tag : entry.tags()) {
+            Set<String> keys = keysByTag.get(tag);
+            if (keys == null) continue;
+            keys.remove(key);
+            if (keys.isEmpty()) keysByTag.remove(tag);
+        }
+    }
+
+    // Rough retained size; dimension names are shared with DimensionCache and not counted
+    private static long estimateBytes(Object value) {
+        if (value instanceof Song song) return songBytes(song);
+        if (value instanceof SongPage page) return 32 + estimateBytes(page.songs()) + (page.next() == null ? 0 : 64);
+        if (value instanceof List<?> list) {
+            long total = 24 + 4L * list.size();
+            for (Object item : list) {
+                total += item instanceof Song song ? songBytes(song) : 16;
+            }
+            return total;
+        }
+        return 64;
+    }
+
+    private static long songBytes(Song song) {
+        return 40 + stringBytes(song.title()) + stringBytes(song.fileName());
+    }
+
+    private static long stringBytes(String value) {
+        return value == null ? 0 : 40 + 2L * value.length();
+    }
+}
@@ -0,0 +1,163 @@
+package database;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Measures what one catalog row costs in memory, read the way DbFinder did before {@link Song}
+ * (a four-way join into a {@code HashMap<String, String>} per row) and the way it does now
+ * ({@link DbFinder#readSong}, names from the dimension caches). Builds a throwaway database of
+ * {@code rows} songs over {@code artists} artists in the temp folder, reads it both ways, and
+ * reports per row the heap still reachable from the result list after a full GC and the bytes
+ * the reading thread allocated. Run with a fixed heap so GC sizing does not blur the numbers:
+ * <pre>gradle rowFootprint --args="1000000 5000"</pre>
+ */
+public class RowFootprint {
+
+    private static final String MAP_QUERY = """
+        SELECT s.id, s.title, a.name AS artist, l.name AS language, g.name AS genre, s.rating, s.file_name
+        FROM songs s
+        JOIN artists a ON s.artist_id = a.id
+        JOIN languages l ON s.language_id = l.id
+        JOIN genres g ON s.genre_id = g.id
+    """;
+    private static final String SONG_QUERY = "SELECT " + DbFinder.SONG_COLUMNS + " FROM songs s";
+    private static final int LANGUAGES = 20;
+    private static final int GENRES = 50;
+
+    private record Footprint(long retainedBytes, long allocatedBytes) {}
+
+    public static void main(String[] args) throws Exception {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int artists = args.length > 1 ? Integer.parseInt(args[1]) : 5_000;
+
+        Path file = Files.createTempFile("row-footprint", ".db");
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + file)) {
+            SchemaMigrator.migrate(conn);
+            populate(conn, rows, artists);
+            System.out.printf("%,d rows, %,d artists, JDK %s, max heap %,d MB%n",
+                    rows, artists, Runtime.version(), Runtime.getRuntime().maxMemory() >> 20);
+
+            // Loaded up front, as the running app has them; the map rows carry their own copies
+            DimensionCache.ARTISTS.nameOf(conn, 1);
+            DimensionCache.LANGUAGES.nameOf(conn, 1);
+            DimensionCache.GENRES.nameOf(conn, 1);
+
+            report("HashMap rows", rows, measure(() -> readMaps(conn)));
+            report("Song rows", rows, measure(() -> readSongs(conn)));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static void populate(Connection conn, int rows, int artists) throws SQLException {
+        conn.setAutoCommit(false);
+        insertNames(conn, "artists", "Artist ", artists);
+        insertNames(conn, "languages", "Language ", LANGUAGES);
+        insertNames(conn, "genres", "Genre ", GENRES);
+
+        // Search indexing is left suspended; the measurement never reads songs_fts
+        SearchIndexSync.suspend(conn);
+        String sql = "INSERT INTO songs (title, artist_id, language_id, genre_id, rating, file_name) VALUES (?, ?, ?, ?, ?, ?)";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (int i = 1; i <= rows; i++) {
+                String title = "Song title number " + i;
+                stmt.setString(1, title);
+                stmt.setInt(2, 1 + i % artists);
+                stmt.setInt(3, 1 + i % LANGUAGES);
+                stmt.setInt(4, 1 + i % GENRES);
+                stmt.setDouble(5, i % 11 / 2.0);
+                stmt.setString(6, "data/audiofiles/" + title + ".mp3");
+                stmt.addBatch();
+                if (i % 10_000 == 0) stmt.executeBatch();
+            }
+            stmt.executeBatch();
+        }
+        conn.commit();
+        conn.setAutoCommit(true);
+    }
+
+    private static void insertNames(Connection conn, String table, String prefix, int count) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("INSERT INTO " + table + " (name) VALUES (?)")) {
+            for (int i = 1; i <= count; i++) {
+                stmt.setString(1, prefix + i);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    // The row shape DbFinder returned before Song
+    private static List<Map<String, String>> readMaps(Connection conn) {
+        List<Map<String, String>> songs = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement(MAP_QUERY);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                Map<String, String> song = new HashMap<>();
+                song.put("ID", String.valueOf(rs.getInt("id")));
+                song.put("Title", rs.getString("title"));
+                song.put("Artist", rs.getString("artist"));
+                song.put("Language", rs.getString("language"));
+                song.put("Genre", rs.getString("genre"));
+                song.put("Rating", String.valueOf(rs.getDouble("rating")));
+                song.put("file_name", rs.getString("file_name"));
+                songs.add(song);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+        return songs;
+    }
+
+    private static List<Song> readSongs(Connection conn) {
+        List<Song> songs = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement(SONG_QUERY);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) songs.add(DbFinder.readSong(rs));
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+        return songs;
+    }
+
+    private static Footprint measure(Supplier<List<?>> read) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+
+        long before = usedAfterGc();
+        long allocatedBefore = threads.getThreadAllocatedBytes(thread);
+        List<?> result = read.get();
+        long allocated = threads.getThreadAllocatedBytes(thread) - allocatedBefore;
+        long retained = usedAfterGc() - before;
+
+        if (result.isEmpty()) throw new IllegalStateException("nothing was read");
+        return new Footprint(retained, allocated);
+    }
+
+    private static long usedAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        // Collect until the figure settles; one System.gc() can leave floating garbage behind
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+
+    private static void report(String shape, int rows, Footprint footprint) {
+        System.out.printf("%-13s %,6d B/row retained, %,6d B/row allocated%n",
+                shape + ":", footprint.retainedBytes() / rows, footprint.allocatedBytes() / rows);
+    }
+}
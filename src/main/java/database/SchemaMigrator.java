@@ -0,0 +1,290 @@
+package database;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * Ordered schema migrations tracked in SQLite's {@code user_version}. Each step runs in its own
+ * transaction together with the version bump, so an interrupted upgrade resumes where it stopped.
+ * An up-to-date database costs a single PRAGMA read at startup.
+ */
+class SchemaMigrator {
+
+    private interface Step {
+        void apply(Statement stmt) throws SQLException;
+    }
+
+    private record Migration(int version, String description, Step step) {}
+
+    // Append new steps at the end; never edit or reorder a released one
+    private static final List<Migration> MIGRATIONS = List.of(
+            new Migration(1, "core tables", SchemaMigrator::createCoreTables),
+            new Migration(2, "full-text search index", SchemaMigrator::createSearchIndex),
+            new Migration(3, "lookup indexes", SchemaMigrator::createLookupIndexes),
+            new Migration(4, "title order index for paging", SchemaMigrator::createTitleOrderIndex),
+            new Migration(5, "suspendable search index trigger", SchemaMigrator::makeSearchTriggerSuspendable),
+            new Migration(6, "library scan metadata", SchemaMigrator::addLibraryScanMetadata),
+            new Migration(7, "audio content hashes", SchemaMigrator::addAudioHashes),
+            new Migration(8, "track loudness", SchemaMigrator::addTrackLoudness),
+            new Migration(9, "play history", SchemaMigrator::addPlayHistory),
+            new Migration(10, "daily play counts", SchemaMigrator::addDailyPlayCounts)
+    );
+
+    static final int LATEST_VERSION = MIGRATIONS.get(MIGRATIONS.size() - 1).version();
+
+    // Returns the schema version the database is at afterwards
+    static int migrate(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            int current = userVersion(stmt);
+            if (current > LATEST_VERSION) {
+                System.err.println("⚠️ Database schema version " + current + " is newer than this build (" + LATEST_VERSION + ").");
+                return current;
+            }
+
+            for (Migration migration : MIGRATIONS) {
+                if (migration.version() <= current) continue;
+
+                conn.setAutoCommit(false);
+                try {
+                    migration.step().apply(stmt);
+                    stmt.execute("PRAGMA user_version = " + migration.version());
+                    conn.commit();
+                    current = migration.version();
+                    System.out.println("🛠 Applied schema migration " + current + ": " + migration.description());
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw new SQLException("Migration " + migration.version() + " (" + migration.description() + ") failed: " + e.getMessage(), e);
+                } finally {
+                    conn.setAutoCommit(true);
+                }
+            }
+            return current;
+        }
+    }
+
+    private static int userVersion(Statement stmt) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery("PRAGMA user_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    // Pre-migration databases already have these tables, hence IF NOT EXISTS
+    private static void createCoreTables(Statement stmt) throws SQLException {
+        // Artists table
+        stmt.execute("""
+            CREATE TABLE IF NOT EXISTS artists (
+                id INTEGER PRIMARY KEY AUTOINCREMENT,
+                name TEXT NOT NULL UNIQUE
+            );
+        """);
+
+        // Languages table
+        stmt.execute("""
+            CREATE TABLE IF NOT EXISTS languages (
+                id INTEGER PRIMARY KEY AUTOINCREMENT,
+                name TEXT NOT NULL UNIQUE
+            );
+        """);
+
+        // Genres table
+        stmt.execute("""
+            CREATE TABLE IF NOT EXISTS genres (
+                id INTEGER PRIMARY KEY AUTOINCREMENT,
+                name TEXT NOT NULL UNIQUE
+            );
+        """);
+
+        // Songs table
+        stmt.execute("""
+            CREATE TABLE IF NOT EXISTS songs (
+                id INTEGER PRIMARY KEY AUTOINCREMENT,
+                title TEXT NOT NULL,
+                artist_id INTEGER NOT NULL,
+                language_id INTEGER NOT NULL,
+                genre_id INTEGER NOT NULL,
+                rating REAL,
+                file_name TEXT NOT NULL,
+                FOREIGN KEY (artist_id) REFERENCES artists(id),
+                FOREIGN KEY (language_id) REFERENCES languages(id),
+                FOREIGN KEY (genre_id) REFERENCES genres(id)
+            );
+        """);
+    }
+
+    // Full-text index over title, artist, language and genre, kept in sync by triggers on songs
+    private static void createSearchIndex(Statement stmt) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery("SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = 'songs_fts'")) {
+            if (rs.next()) return;
+        }
+
+        stmt.execute("""
+            CREATE VIRTUAL TABLE songs_fts USING fts5(
+                title, artist, language, genre,
+                tokenize = 'unicode61 remove_diacritics 2',
+                prefix = '2 3'
+            );
+        """);
+
+        stmt.execute("""
+            CREATE TRIGGER songs_fts_after_insert AFTER INSERT ON songs BEGIN
+                INSERT INTO songs_fts (rowid, title, artist, language, genre)
+                VALUES (new.id, new.title,
+                        (SELECT name FROM artists WHERE id = new.artist_id),
+                        (SELECT name FROM languages WHERE id = new.language_id),
+                        (SELECT name FROM genres WHERE id = new.genre_id));
+            END;
+        """);
+
+        stmt.execute("""
+            CREATE TRIGGER songs_fts_after_delete AFTER DELETE ON songs BEGIN
+                DELETE FROM songs_fts WHERE rowid = old.id;
+            END;
+        """);
+
+        stmt.execute("""
+            CREATE TRIGGER songs_fts_after_update
+            AFTER UPDATE OF id, title, artist_id, language_id, genre_id ON songs BEGIN
+                DELETE FROM songs_fts WHERE rowid = old.id;
+                INSERT INTO songs_fts (rowid, title, artist, language, genre)
+                VALUES (new.id, new.title,
+                        (SELECT name FROM artists WHERE id = new.artist_id),
+                        (SELECT name FROM languages WHERE id = new.language_id),
+                        (SELECT name FROM genres WHERE id = new.genre_id));
+            END;
+        """);
+
+        // Songs that predate the index are copied in once
+        stmt.execute("""
+            INSERT INTO songs_fts (rowid, title, artist, language, genre)
+            SELECT s.id, s.title, a.name, l.name, g.name
+            FROM songs s
+            LEFT JOIN artists a ON s.artist_id = a.id
+            LEFT JOIN languages l ON s.language_id = l.id
+            LEFT JOIN genres g ON s.genre_id = g.id
+        """);
+    }
+
+    private static void createLookupIndexes(Statement stmt) throws SQLException {
+        // findSongIdsByTitle: WHERE LOWER(title) = ?
+        stmt.execute("CREATE INDEX IF NOT EXISTS idx_songs_title_lower ON songs (LOWER(title))");
+
+        // Category lookups: WHERE LOWER(name) = ? on the dimension tables
+        stmt.execute("CREATE INDEX IF NOT EXISTS idx_artists_name_lower ON artists (LOWER(name))");
+        stmt.execute("CREATE INDEX IF NOT EXISTS idx_languages_name_lower ON languages (LOWER(name))");
+        stmt.execute("CREATE INDEX IF NOT EXISTS idx_genres_name_lower ON genres (LOWER(name))");
+
+        // Join from a dimension to its songs, already in title order; the rowid makes
+        // ID-only category queries and the orphan checks in deleteSongById index-only
+        stmt.execute("CREATE INDEX IF NOT EXISTS idx_songs_artist_title ON songs (artist_id, title COLLATE NOCASE)");
+        stmt.execute("CREATE INDEX IF NOT EXISTS idx_songs_language_title ON songs (language_id, title COLLATE NOCASE)");
+        stmt.execute("CREATE INDEX IF NOT EXISTS idx_songs_genre_title ON songs (genre_id, title COLLATE NOCASE)");
+
+        stmt.execute("ANALYZE");
+    }
+
+    // Catalog pages walk songs in (title COLLATE NOCASE, id) order
+    private static void createTitleOrderIndex(Statement stmt) throws SQLException {
+        stmt.execute("CREATE INDEX IF NOT EXISTS idx_songs_title_nocase ON songs (title COLLATE NOCASE)");
+        stmt.execute("ANALYZE songs");
+    }
+
+    // Lets bulk writers index their rows in one statement; see SearchIndexSync
+    private static void makeSearchTriggerSuspendable(Statement stmt) throws SQLException {
+        stmt.execute("CREATE TABLE IF NOT EXISTS search_index_sync (suspended INTEGER NOT NULL)");
+        stmt.execute("INSERT INTO search_index_sync (suspended) SELECT 0 WHERE NOT EXISTS (SELECT 1 FROM search_index_sync)");
+
+        stmt.execute("DROP TRIGGER IF EXISTS songs_fts_after_insert");
+        stmt.execute("""
+            CREATE TRIGGER songs_fts_after_insert AFTER INSERT ON songs
+            WHEN (SELECT suspended FROM search_index_sync) = 0 BEGIN
+                INSERT INTO songs_fts (rowid, title, artist, language, genre)
+                VALUES (new.id, new.title,
+                        (SELECT name FROM artists WHERE id = new.artist_id),
+                        (SELECT name FROM languages WHERE id = new.language_id),
+                        (SELECT name FROM genres WHERE id = new.genre_id));
+            END;
+        """);
+    }
+
+    // Stream facts from LibraryScanner, and the size/mtime of every file it has indexed
+    private static void addLibraryScanMetadata(Statement stmt) throws SQLException {
+        stmt.execute("ALTER TABLE songs ADD COLUMN duration_ms INTEGER");
+        stmt.execute("ALTER TABLE songs ADD COLUMN bitrate_kbps INTEGER");
+
+        // Scanned files are matched to their song by path
+        stmt.execute("CREATE INDEX IF NOT EXISTS idx_songs_file_name ON songs (file_name)");
+
+        stmt.execute("""
+            CREATE TABLE IF NOT EXISTS library_files (
+                path TEXT PRIMARY KEY,
+                size INTEGER NOT NULL,
+                modified_ms INTEGER NOT NULL
+            ) WITHOUT ROWID;
+        """);
+    }
+
+    // XXH64 of each file's audio frames; reset to NULL whenever a rescan records the file again
+    private static void addAudioHashes(Statement stmt) throws SQLException {
+        stmt.execute("ALTER TABLE library_files ADD COLUMN audio_hash INTEGER");
+        stmt.execute("CREATE INDEX IF NOT EXISTS idx_library_files_audio_hash ON library_files (audio_hash)");
+    }
+
+    // From LoudnessAnalyzer; gain_db stays NULL until a file is analysed, and again after it changes
+    private static void addTrackLoudness(Statement stmt) throws SQLException {
+        stmt.execute("ALTER TABLE library_files ADD COLUMN loudness_lufs REAL");
+        stmt.execute("ALTER TABLE library_files ADD COLUMN peak REAL");
+        stmt.execute("ALTER TABLE library_files ADD COLUMN gain_db REAL");
+    }
+
+    // Written by PlayHistory; song_play_stats is replaced by the daily counts of version 10
+    private static void addPlayHistory(Statement stmt) throws SQLException {
+        stmt.execute("""
+            CREATE TABLE IF NOT EXISTS play_events (
+                id INTEGER PRIMARY KEY,
+                song_id INTEGER NOT NULL,
+                kind TEXT NOT NULL,
+                at_ms INTEGER NOT NULL,
+                position_ms INTEGER NOT NULL
+            )
+        """);
+        // Covered "most played since" until version 10 moved it to the daily counts
+        stmt.execute("CREATE INDEX IF NOT EXISTS idx_play_events_kind_at ON play_events (kind, at_ms, song_id)");
+        stmt.execute("CREATE INDEX IF NOT EXISTS idx_play_events_song ON play_events (song_id)");
+        stmt.execute("""
+            CREATE TABLE IF NOT EXISTS song_play_stats (
+                song_id INTEGER PRIMARY KEY,
+                plays INTEGER NOT NULL DEFAULT 0,
+                finishes INTEGER NOT NULL DEFAULT 0,
+                skips INTEGER NOT NULL DEFAULT 0,
+                last_played_ms INTEGER
+            )
+        """);
+    }
+
+    // Per song and UTC day, so "most played since" sums a few rows per day instead of counting events
+    private static void addDailyPlayCounts(Statement stmt) throws SQLException {
+        stmt.execute("""
+            CREATE TABLE IF NOT EXISTS song_play_days (
+                day INTEGER NOT NULL,
+                song_id INTEGER NOT NULL,
+                plays INTEGER NOT NULL DEFAULT 0,
+                finishes INTEGER NOT NULL DEFAULT 0,
+                skips INTEGER NOT NULL DEFAULT 0,
+                PRIMARY KEY (day, song_id)
+            ) WITHOUT ROWID
+        """);
+        stmt.execute("CREATE INDEX IF NOT EXISTS idx_song_play_days_song ON song_play_days (song_id)");
+        stmt.execute("""
+            INSERT INTO song_play_days (day, song_id, plays, finishes, skips)
+            SELECT at_ms / 86400000, song_id,
+                   SUM(kind = 'START'), SUM(kind = 'FINISH'), SUM(kind = 'SKIP')
+            FROM play_events
+            GROUP BY at_ms / 86400000, song_id
+        """);
+        stmt.execute("DROP TABLE IF EXISTS song_play_stats");
+        stmt.execute("DROP INDEX IF EXISTS idx_play_events_kind_at");
+    }
+}
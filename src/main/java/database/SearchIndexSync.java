@@ -0,0 +1,49 @@
+package database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Bulk maintenance of {@code songs_fts} inside a write transaction. The insert trigger indexes
+ * one row per statement, and FTS5 flushes its pending segment at every statement savepoint, so
+ * thousands of trigger-driven inserts each write and merge a tiny segment. Bulk writers instead
+ * suspend the trigger, insert their rows, and index them with a single INSERT ... SELECT.
+ * The flag lives in the same transaction, so a rollback also restores the trigger.
+ */
+class SearchIndexSync {
+
+    private SearchIndexSync() {
+    }
+
+    // Returns the highest song id before the batch; everything above it is indexed by indexSince
+    static long suspend(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("UPDATE search_index_sync SET suspended = 1");
+            try (ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(id), 0) FROM songs")) {
+                return rs.next() ? rs.getLong(1) : 0;
+            }
+        }
+    }
+
+    static void indexSince(Connection conn, long lastId) throws SQLException {
+        String sql = """
+            INSERT INTO songs_fts (rowid, title, artist, language, genre)
+            SELECT s.id, s.title, a.name, l.name, g.name
+            FROM songs s
+            LEFT JOIN artists a ON s.artist_id = a.id
+            LEFT JOIN languages l ON s.language_id = l.id
+            LEFT JOIN genres g ON s.genre_id = g.id
+            WHERE s.id > ?
+        """;
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setLong(1, lastId);
+            stmt.executeUpdate();
+        }
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("UPDATE search_index_sync SET suspended = 0");
+        }
+    }
+}
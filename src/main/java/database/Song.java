@@ -0,0 +1,9 @@
+package database;
+
+/**
+ * One row of the catalog. Artist, language and genre are the shared instances held by
+ * {@link DimensionCache}, so a million songs by a few thousand artists keep only a few
+ * thousand name strings alive.
+ */
+public record Song(int id, String title, String artist, String language, String genre, float rating, String fileName) {
+}
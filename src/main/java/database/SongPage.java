@@ -0,0 +1,13 @@
+package database;
+
+import java.util.List;
+
+/**
+ * One page of songs plus the cursor for the next one; {@code next} is null on the last page.
+ */
+public record SongPage(List<Song> songs, PageKey next) {
+
+    public boolean hasMore() {
+        return next != null;
+    }
+}
@@ -1,22 +1,31 @@
 package gui;
 
-import database.DbAssist;
+import backend.DuplicateFinder;
+import backend.LibraryScanner;
+import database.AsyncDb;
+import database.CsvImporter;
 import database.DbFinder;
+import database.Song;
+import javafx.application.Platform;
+import javafx.beans.binding.Bindings;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
+import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
 import javafx.stage.FileChooser;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
 
 import java.io.File;
+import java.util.Comparator;
 import java.util.List;
-import java.util.Map;
 
 public class AdminPanel {
 
+    private static final int PAGE_SIZE = 100;
+
     private VBox layout;
 
     public void start(Stage stage) {
@@ -37,13 +46,85 @@ public class AdminPanel {
 
         Button addSongBtn = new Button("➕ Add Songs");
         Button manageSongBtn = new Button("✏️🗑 Edit or Remove Song");
+        Button duplicatesBtn = new Button("🧬 Find Duplicate Songs");
         Button backBtn = new Button("🔙 Back to Login");
 
         addSongBtn.setOnAction(e -> buildAddSongOptionsView(stage));
         manageSongBtn.setOnAction(e -> buildManageSongSearchView(stage));
+        duplicatesBtn.setOnAction(e -> buildDuplicatesView(stage));
         backBtn.setOnAction(e -> new LoginScreen("admin").start(stage));
 
-        layout.getChildren().addAll(addSongBtn, manageSongBtn, backBtn);
+        layout.getChildren().addAll(addSongBtn, manageSongBtn, duplicatesBtn, backBtn);
+    }
+
+    // Songs whose files hold identical audio; each group can be merged into its best-rated song
+    private void buildDuplicatesView(Stage stage) {
+        layout.getChildren().clear();
+
+        Button scanBtn = new Button("🔍 Scan for Duplicates");
+        Button backBtn = new Button("🔙 Back to Admin Panel");
+        Label progressLabel = new Label();
+        VBox groupsBox = new VBox(12);
+        groupsBox.setAlignment(Pos.CENTER);
+        ScrollPane scrollPane = new ScrollPane(groupsBox);
+        scrollPane.setFitToWidth(true);
+        scrollPane.setPrefViewportHeight(400);
+
+        scanBtn.setOnAction(e -> {
+            scanBtn.setDisable(true);
+            groupsBox.getChildren().clear();
+            progressLabel.setText("⏳ Hashing audio...");
+
+            DuplicateFinder.ProgressListener listener = (hashed, toHash) ->
+                    Platform.runLater(() -> progressLabel.setText("⏳ Hashed " + hashed + " of " + toHash + " files"));
+
+            FxAsync.onFx(AsyncDb.supply(() -> {
+                DuplicateFinder.hashLibrary(LibraryScanner.DEFAULT_ROOT, listener);
+                return DuplicateFinder.findDuplicates();
+            }), groups -> {
+                scanBtn.setDisable(false);
+                progressLabel.setText(groups.isEmpty() ? "✅ No duplicates found." : "🧬 " + groups.size() + " groups of duplicates");
+                for (List<Song> group : groups) {
+                    groupsBox.getChildren().add(duplicateGroupView(stage, group, groupsBox));
+                }
+            }, error -> {
+                scanBtn.setDisable(false);
+                progressLabel.setText("");
+                showAlert("Scan Failed", "❌ " + error.getMessage(), stage);
+            });
+        });
+
+        backBtn.setOnAction(e -> buildAdminMainView(stage));
+        layout.getChildren().addAll(scanBtn, progressLabel, scrollPane, backBtn);
+    }
+
+    private VBox duplicateGroupView(Stage stage, List<Song> group, VBox groupsBox) {
+        Song keep = group.stream()
+                .max(Comparator.comparingDouble(Song::rating).thenComparing(Song::id, Comparator.reverseOrder()))
+                .orElseThrow();
+
+        VBox box = new VBox(4);
+        box.setAlignment(Pos.CENTER);
+        for (Song song : group) {
+            box.getChildren().add(new Label((song == keep ? "⭐ " : "   ") + song.title() + " — " + song.artist()
+                    + " (" + song.rating() + ")"));
+        }
+
+        Button mergeBtn = new Button("🔗 Merge into \"" + keep.title() + "\"");
+        mergeBtn.setOnAction(e -> {
+            mergeBtn.setDisable(true);
+            List<Integer> ids = group.stream().map(Song::id).toList();
+            FxAsync.onFx(AsyncDb.mergeSongs(keep.id(), ids), merged -> {
+                if (merged > 0) {
+                    groupsBox.getChildren().remove(box);
+                } else {
+                    mergeBtn.setDisable(false);
+                    showAlert("Failed", "❌ Could not merge.", stage);
+                }
+            });
+        });
+        box.getChildren().add(mergeBtn);
+        return box;
     }
 
     private void buildAddSongOptionsView(Stage stage) {
@@ -51,13 +132,35 @@ public class AdminPanel {
 
         Button bulkAddBtn = new Button("📄 Add in Bulk (CSV Import)");
         Button singleAddBtn = new Button("🎹 Add Single Song");
+        Button scanBtn = new Button("📂 Scan Music Folder");
         Button backBtn = new Button("🔙 Back to Admin Panel");
+        Label progressLabel = new Label();
 
         bulkAddBtn.setOnAction(e -> buildCsvImportView(stage));
         singleAddBtn.setOnAction(e -> buildSingleSongAddView(stage));
+        scanBtn.setOnAction(e -> scanLibrary(stage, scanBtn, progressLabel));
         backBtn.setOnAction(e -> buildAdminMainView(stage));
 
-        layout.getChildren().addAll(bulkAddBtn, singleAddBtn, backBtn);
+        layout.getChildren().addAll(bulkAddBtn, singleAddBtn, scanBtn, progressLabel, backBtn);
+    }
+
+    // Index new and changed files in data/audiofiles; unchanged files are skipped
+    private void scanLibrary(Stage stage, Button scanBtn, Label progressLabel) {
+        scanBtn.setDisable(true);
+        progressLabel.setText("⏳ Scanning " + LibraryScanner.DEFAULT_ROOT + "...");
+
+        LibraryScanner.ProgressListener listener = (parsed, toParse) ->
+                Platform.runLater(() -> progressLabel.setText("⏳ Read " + parsed + " of " + toParse + " changed files"));
+
+        FxAsync.onFx(AsyncDb.supply(() -> LibraryScanner.scan(LibraryScanner.DEFAULT_ROOT, listener)), result -> {
+            scanBtn.setDisable(false);
+            progressLabel.setText("");
+            showAlert("Scan Complete", "📂 " + result, stage);
+        }, error -> {
+            scanBtn.setDisable(false);
+            progressLabel.setText("");
+            showAlert("Scan Failed", "❌ " + error.getMessage(), stage);
+        });
     }
 
     private void buildCsvImportView(Stage stage) {
@@ -79,14 +182,28 @@ public class AdminPanel {
             if (file != null) pathField.setText(file.getAbsolutePath());
         });
 
+        Label progressLabel = new Label();
+
         importBtn.setOnAction(e -> {
-            int count = DbAssist.importFromCSV(pathField.getText().trim());
-            showAlert("Import Complete", count + " songs added successfully!", stage);
-            buildAddSongOptionsView(stage);
+            importBtn.setDisable(true);
+            backBtn.setDisable(true);
+            progressLabel.setText("⏳ Importing...");
+
+            CsvImporter.ProgressListener listener = progress ->
+                    Platform.runLater(() -> progressLabel.setText("⏳ " + progress));
+
+            FxAsync.onFx(AsyncDb.importFromCSV(pathField.getText().trim(), CsvImporter.DEFAULT_BATCH_SIZE, listener), count -> {
+                showAlert("Import Complete", count + " songs added successfully!", stage);
+                buildAddSongOptionsView(stage);
+            }, error -> {
+                importBtn.setDisable(false);
+                backBtn.setDisable(false);
+                showAlert("Import Failed", "❌ " + error.getMessage(), stage);
+            });
         });
 
         backBtn.setOnAction(e -> buildAddSongOptionsView(stage));
-        layout.getChildren().addAll(instruction, pathField, browseBtn, importBtn, backBtn);
+        layout.getChildren().addAll(instruction, pathField, browseBtn, importBtn, progressLabel, backBtn);
     }
 
     private void buildSingleSongAddView(Stage stage) {
@@ -110,8 +227,8 @@ public class AdminPanel {
                 double rating = Double.parseDouble(ratingField.getText().trim());
                 String fileName = "data/audiofiles/" + title + ".mp3";
 
-                boolean success = DbAssist.addSong(title, artist, language, genre, rating, fileName);
-                showAlert(success ? "Success" : "Failure", success ? "🎉 Song added!" : "❌ Failed to add.", stage);
+                FxAsync.onFx(AsyncDb.addSong(title, artist, language, genre, rating, fileName), success ->
+                        showAlert(success ? "Success" : "Failure", success ? "🎉 Song added!" : "❌ Failed to add.", stage));
             } catch (Exception ex) {
                 showAlert("Error", "Invalid input: " + ex.getMessage(), stage);
             }
@@ -133,46 +250,46 @@ public class AdminPanel {
         layout.getChildren().clear();
 
         TextField titleField = new TextField();
-        titleField.setPromptText("Enter song title...");
+        titleField.setPromptText("Enter song title, or leave blank to browse all...");
 
         Button searchBtn = new Button("🔍 Search");
         Button backBtn = new Button("🔙 Back");
 
-        TableView<Map<String, String>> table = new TableView<>();
+        TableView<Song> table = new TableView<>();
         table.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY);
 
-        TableColumn<Map<String, String>, String> titleCol = new TableColumn<>("Title");
-        TableColumn<Map<String, String>, String> artistCol = new TableColumn<>("Artist");
-        TableColumn<Map<String, String>, String> langCol = new TableColumn<>("Language");
-        TableColumn<Map<String, String>, String> genreCol = new TableColumn<>("Genre");
-        TableColumn<Map<String, String>, String> ratingCol = new TableColumn<>("Rating");
-        TableColumn<Map<String, String>, Void> editCol = new TableColumn<>("✏️");
-        TableColumn<Map<String, String>, Void> deleteCol = new TableColumn<>("🗑");
+        TableColumn<Song, String> titleCol = new TableColumn<>("Title");
+        TableColumn<Song, String> artistCol = new TableColumn<>("Artist");
+        TableColumn<Song, String> langCol = new TableColumn<>("Language");
+        TableColumn<Song, String> genreCol = new TableColumn<>("Genre");
+        TableColumn<Song, String> ratingCol = new TableColumn<>("Rating");
+        TableColumn<Song, Void> editCol = new TableColumn<>("✏️");
+        TableColumn<Song, Void> deleteCol = new TableColumn<>("🗑");
 
-        titleCol.setCellValueFactory(data -> new SimpleStringProperty(data.getValue().get("Title")));
-        artistCol.setCellValueFactory(data -> new SimpleStringProperty(data.getValue().get("Artist")));
-        langCol.setCellValueFactory(data -> new SimpleStringProperty(data.getValue().get("Language")));
-        genreCol.setCellValueFactory(data -> new SimpleStringProperty(data.getValue().get("Genre")));
-        ratingCol.setCellValueFactory(data -> new SimpleStringProperty(data.getValue().get("Rating")));
+        titleCol.setCellValueFactory(data -> new SimpleStringProperty(data.getValue().title()));
+        artistCol.setCellValueFactory(data -> new SimpleStringProperty(data.getValue().artist()));
+        langCol.setCellValueFactory(data -> new SimpleStringProperty(data.getValue().language()));
+        genreCol.setCellValueFactory(data -> new SimpleStringProperty(data.getValue().genre()));
+        ratingCol.setCellValueFactory(data -> new SimpleStringProperty(String.valueOf(data.getValue().rating())));
 
         editCol.setCellFactory(tc -> new TableCell<>() {
             private final Button btn = new Button("Edit");
             {
                 btn.setOnAction(e -> {
                     int index = getIndex();
-                    Map<String, String> songData = getTableView().getItems().get(index);
-                    int songId = Integer.parseInt(songData.get("ID"));
+                    Song song = getTableView().getItems().get(index);
+                    int songId = song.id();
 
                     Dialog<Void> dialog = new Dialog<>();
                     dialog.initModality(Modality.WINDOW_MODAL);
                     dialog.initOwner(stage);
-                    dialog.setTitle("Edit Song - " + songData.get("Title"));
+                    dialog.setTitle("Edit Song - " + song.title());
 
-                    TextField titleField = new TextField(songData.get("Title"));
-                    TextField artistField = new TextField(songData.get("Artist"));
-                    TextField languageField = new TextField(songData.get("Language"));
-                    TextField genreField = new TextField(songData.get("Genre"));
-                    TextField ratingField = new TextField(songData.get("Rating"));
+                    TextField titleField = new TextField(song.title());
+                    TextField artistField = new TextField(song.artist());
+                    TextField languageField = new TextField(song.language());
+                    TextField genreField = new TextField(song.genre());
+                    TextField ratingField = new TextField(String.valueOf(song.rating()));
 
                     VBox form = new VBox(10,
                             new Label("Title:"), titleField,
@@ -196,8 +313,8 @@ public class AdminPanel {
                                 String genre = capitalizeWords(genreField.getText().trim());
                                 double rating = Double.parseDouble(ratingField.getText().trim());
 
-                                boolean success = DbAssist.updateSongById(songId, title, artist, language, genre, rating);
-                                showAlert(success ? "Success" : "Failed", success ? "✅ Song updated." : "❌ Failed to update.", stage);
+                                FxAsync.onFx(AsyncDb.updateSongById(songId, title, artist, language, genre, rating), success ->
+                                        showAlert(success ? "Success" : "Failed", success ? "✅ Song updated." : "❌ Failed to update.", stage));
                             } catch (Exception ex) {
                                 showAlert("Error", "❌ Invalid input: " + ex.getMessage(), stage);
                             }
@@ -220,9 +337,9 @@ public class AdminPanel {
             {
                 btn.setOnAction(e -> {
                     int index = getIndex();
-                    Map<String, String> songData = getTableView().getItems().get(index);
-                    String title = songData.get("Title");
-                    int songId = Integer.parseInt(songData.get("ID"));
+                    Song song = getTableView().getItems().get(index);
+                    String title = song.title();
+                    int songId = song.id();
 
                     Alert confirm = new Alert(Alert.AlertType.CONFIRMATION);
                     confirm.initOwner(stage);
@@ -232,13 +349,14 @@ public class AdminPanel {
 
                     confirm.showAndWait().ifPresent(response -> {
                         if (response == ButtonType.OK) {
-                            boolean success = DbAssist.deleteSongById(songId);
-                            if (success) {
-                                getTableView().getItems().remove(index);
-                                showAlert("Deleted", "✅ \"" + title + "\" deleted.", stage);
-                            } else {
-                                showAlert("Failed", "❌ Could not delete.", stage);
-                            }
+                            FxAsync.onFx(AsyncDb.deleteSongById(songId), success -> {
+                                if (success) {
+                                    table.getItems().remove(song);
+                                    showAlert("Deleted", "✅ \"" + title + "\" deleted.", stage);
+                                } else {
+                                    showAlert("Failed", "❌ Could not delete.", stage);
+                                }
+                            });
                         }
                     });
                 });
@@ -251,23 +369,111 @@ public class AdminPanel {
         });
 
         table.getColumns().addAll(titleCol, artistCol, langCol, genreCol, ratingCol, editCol, deleteCol);
+        table.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
+
+        Button editSelectedBtn = new Button("✏️ Edit Selected");
+        Button deleteSelectedBtn = new Button("🗑 Delete Selected");
+        editSelectedBtn.disableProperty().bind(Bindings.isEmpty(table.getSelectionModel().getSelectedItems()));
+        deleteSelectedBtn.disableProperty().bind(Bindings.isEmpty(table.getSelectionModel().getSelectedItems()));
+
+        editSelectedBtn.setOnAction(e -> editSelected(stage, List.copyOf(table.getSelectionModel().getSelectedItems()), searchBtn::fire));
+        deleteSelectedBtn.setOnAction(e -> deleteSelected(stage, table));
+
+        HBox bulkActions = new HBox(10, editSelectedBtn, deleteSelectedBtn);
+        bulkActions.setAlignment(Pos.CENTER);
+
+        // A blank title browses the whole catalog page by page
+        LazySongLoader loader = new LazySongLoader(table, PAGE_SIZE);
 
         searchBtn.setOnAction(e -> {
-            table.getItems().clear();
-            List<Integer> ids = DbFinder.findSongIdsByTitle(titleField.getText().trim());
-            ids.stream()
-                .map(id -> {
-                    Map<String, String> data = DbFinder.searchSong(id);
-                    if (data != null) data.put("ID", String.valueOf(id));
-                    return data;
-                })
-                .filter(data -> data != null)
-                .forEach(data -> table.getItems().add(data));
+            String title = titleField.getText().trim();
+            if (title.isEmpty()) {
+                loader.load(AsyncDb::getSongsPage);
+                return;
+            }
+            loader.clear();
+            FxAsync.onFx(AsyncDb.supply(() -> DbFinder.searchSongs(DbFinder.findSongIdsByTitle(title))),
+                    songs -> table.getItems().setAll(songs));
         });
 
         backBtn.setOnAction(e -> buildAdminMainView(stage));
 
-        layout.getChildren().addAll(new Label("Search Song Title:"), titleField, searchBtn, table, backBtn);
+        layout.getChildren().addAll(new Label("Search Song Title:"), titleField, searchBtn, table, bulkActions, backBtn);
+    }
+
+    // One dialog for all selected songs; blank fields keep each song's current value
+    private void editSelected(Stage stage, List<Song> songs, Runnable refresh) {
+        Dialog<Void> dialog = new Dialog<>();
+        dialog.initModality(Modality.WINDOW_MODAL);
+        dialog.initOwner(stage);
+        dialog.setTitle("Edit " + songs.size() + " Songs");
+
+        TextField artistField = new TextField();
+        TextField languageField = new TextField();
+        TextField genreField = new TextField();
+        TextField ratingField = new TextField();
+        for (TextField field : List.of(artistField, languageField, genreField, ratingField)) {
+            field.setPromptText("Leave blank to keep");
+        }
+
+        VBox form = new VBox(10,
+                new Label("Artist:"), artistField,
+                new Label("Language:"), languageField,
+                new Label("Genre:"), genreField,
+                new Label("Rating:"), ratingField
+        );
+        form.setAlignment(Pos.CENTER_LEFT);
+        dialog.getDialogPane().setContent(form);
+
+        ButtonType saveButton = new ButtonType("Save", ButtonBar.ButtonData.OK_DONE);
+        dialog.getDialogPane().getButtonTypes().addAll(saveButton, ButtonType.CANCEL);
+
+        dialog.setResultConverter(btnType -> {
+            if (btnType == saveButton) {
+                try {
+                    String artist = capitalizeWords(artistField.getText().trim());
+                    String language = capitalizeWords(languageField.getText().trim());
+                    String genre = capitalizeWords(genreField.getText().trim());
+                    String ratingText = ratingField.getText().trim();
+                    Double rating = ratingText.isEmpty() ? null : Double.parseDouble(ratingText);
+                    List<Integer> ids = songs.stream().map(Song::id).toList();
+
+                    FxAsync.onFx(AsyncDb.updateSongs(ids, artist, language, genre, rating), count -> {
+                        showAlert(count > 0 ? "Success" : "Failed",
+                                count > 0 ? "✅ " + count + " songs updated." : "❌ Nothing was updated.", stage);
+                        refresh.run();
+                    });
+                } catch (Exception ex) {
+                    showAlert("Error", "❌ Invalid input: " + ex.getMessage(), stage);
+                }
+            }
+            return null;
+        });
+
+        dialog.showAndWait();
+    }
+
+    private void deleteSelected(Stage stage, TableView<Song> table) {
+        List<Song> songs = List.copyOf(table.getSelectionModel().getSelectedItems());
+
+        Alert confirm = new Alert(Alert.AlertType.CONFIRMATION);
+        confirm.initOwner(stage);
+        confirm.setTitle("Confirm Deletion");
+        confirm.setHeaderText("Delete " + songs.size() + " selected songs?");
+        confirm.setContentText("This action cannot be undone.");
+
+        confirm.showAndWait().ifPresent(response -> {
+            if (response != ButtonType.OK) return;
+            List<Integer> ids = songs.stream().map(Song::id).toList();
+            FxAsync.onFx(AsyncDb.deleteSongs(ids), count -> {
+                if (count > 0) {
+                    table.getItems().removeAll(songs);
+                    showAlert("Deleted", "✅ " + count + " songs deleted.", stage);
+                } else {
+                    showAlert("Failed", "❌ Could not delete.", stage);
+                }
+            });
+        });
     }
 
     private String capitalizeWords(String input) {
@@ -0,0 +1,33 @@
+package gui;
+
+import javafx.application.Platform;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+
+/**
+ * Delivers the result of a background database call back on the JavaFX application thread.
+ * Cancelled futures are dropped silently.
+ */
+public class FxAsync {
+
+    public static <T> CompletableFuture<T> onFx(CompletableFuture<T> future, Consumer<T> onSuccess) {
+        return onFx(future, onSuccess, error -> System.err.println("❌ Background task failed: " + error.getMessage()));
+    }
+
+    public static <T> CompletableFuture<T> onFx(CompletableFuture<T> future, Consumer<T> onSuccess, Consumer<Throwable> onError) {
+        future.whenComplete((value, error) -> {
+            if (future.isCancelled()) return;
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (cause instanceof CancellationException) return;
+
+            Platform.runLater(() -> {
+                if (cause != null) onError.accept(cause);
+                else onSuccess.accept(value);
+            });
+        });
+        return future;
+    }
+}
@@ -0,0 +1,182 @@
+package gui;
+
+import database.CatalogChange;
+import database.DbAssist;
+import database.PageKey;
+import database.Song;
+import database.SongPage;
+import javafx.application.Platform;
+import javafx.beans.value.ChangeListener;
+import javafx.scene.Scene;
+import javafx.scene.control.TableRow;
+import javafx.scene.control.TableView;
+import javafx.stage.Window;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Fills a TableView one keyset page at a time. A new page is fetched in the background when a row
+ * close to the end of what is loaded becomes visible, so only the rows the user scrolls past are
+ * ever read. Switching to a new source cancels the page still in flight for the old one. While
+ * the table is on screen, catalog changes re-read the rows already loaded; the catalog listener
+ * is removed as soon as the table leaves its window or the window closes, so a table that is
+ * gone is not kept alive by it, and a table shown again is re-read once.
+ */
+public class LazySongLoader {
+
+    public interface PageSource {
+        CompletableFuture<SongPage> fetch(PageKey after, int limit);
+    }
+
+    private static final int PREFETCH_ROWS = 20;
+    private static final int MAX_REFRESH_ROWS = 1000;
+
+    private final TableView<Song> table;
+    private final int pageSize;
+
+    private PageSource source;
+    private PageKey next;
+    private boolean exhausted = true;
+    private CompletableFuture<SongPage> inFlight;
+
+    // Changes arrive on database threads; a burst of them is folded into one refresh
+    private final AtomicBoolean refreshQueued = new AtomicBoolean();
+    private final CatalogChange.Listener catalogListener = change -> {
+        if (refreshQueued.compareAndSet(false, true)) Platform.runLater(this::refresh);
+    };
+    private boolean following;
+    private boolean missedChanges;
+
+    // Follow the catalog exactly while the table is in a showing window
+    private final ChangeListener<Boolean> showingListener = (obs, wasShowing, showing) -> updateFollowing();
+    private final ChangeListener<Window> windowListener = (obs, oldWindow, newWindow) -> {
+        if (oldWindow != null) oldWindow.showingProperty().removeListener(showingListener);
+        if (newWindow != null) newWindow.showingProperty().addListener(showingListener);
+        updateFollowing();
+    };
+
+    public LazySongLoader(TableView<Song> table, int pageSize) {
+        this.table = table;
+        this.pageSize = pageSize;
+
+        table.sceneProperty().addListener((obs, oldScene, newScene) -> {
+            if (oldScene != null) oldScene.windowProperty().removeListener(windowListener);
+            if (newScene != null) newScene.windowProperty().addListener(windowListener);
+            windowListener.changed(null, windowOf(oldScene), windowOf(newScene));
+        });
+
+        table.setRowFactory(tv -> new TableRow<>() {
+            @Override
+            public void updateIndex(int index) {
+                super.updateIndex(index);
+                if (index >= 0 && index >= table.getItems().size() - PREFETCH_ROWS) {
+                    // Defer: the table must not change while it is laying out its rows
+                    Platform.runLater(LazySongLoader.this::loadMore);
+                }
+            }
+        });
+    }
+
+    // Replace the table contents with the first page from a new source
+    public void load(PageSource source) {
+        cancelInFlight();
+        this.source = source;
+        next = null;
+        exhausted = false;
+        table.getItems().clear();
+        table.scrollTo(0);
+        updateFollowing();
+        loadMore();
+    }
+
+    // Show a first page fetched elsewhere; later pages come from the given source
+    public void show(SongPage first, PageSource rest) {
+        cancelInFlight();
+        source = rest;
+        next = first.next();
+        exhausted = !first.hasMore();
+        table.getItems().setAll(first.songs());
+        table.scrollTo(0);
+        updateFollowing();
+    }
+
+    public void clear() {
+        cancelInFlight();
+        source = null;
+        exhausted = true;
+        table.getItems().clear();
+        updateFollowing();
+    }
+
+    // Where the rows not loaded yet start; null when every row is in the table
+    public PageKey remaining() {
+        return source == null || exhausted ? null : next;
+    }
+
+    public void loadMore() {
+        if (source == null || exhausted || inFlight != null) return;
+
+        PageSource requested = source;
+        inFlight = FxAsync.onFx(source.fetch(next, pageSize), page -> {
+            if (source != requested) return;
+            inFlight = null;
+            table.getItems().addAll(page.songs());
+            next = page.next();
+            exhausted = !page.hasMore();
+        }, error -> {
+            if (source != requested) return;
+            inFlight = null;
+            exhausted = true;
+            System.err.println("❌ Failed to load page: " + error.getMessage());
+        });
+    }
+
+    private void updateFollowing() {
+        Window window = windowOf(table.getScene());
+        boolean shown = source != null && window != null && window.isShowing();
+        if (shown == following) return;
+
+        following = shown;
+        if (shown) {
+            DbAssist.addChangeListener(catalogListener);
+            if (missedChanges) refresh();
+        } else {
+            DbAssist.removeChangeListener(catalogListener);
+            missedChanges = source != null;
+        }
+    }
+
+    private static Window windowOf(Scene scene) {
+        return scene == null ? null : scene.getWindow();
+    }
+
+    // Re-read the loaded rows from the top
+    private void refresh() {
+        refreshQueued.set(false);
+        missedChanges = false;
+        if (source == null) return;
+
+        cancelInFlight();
+        PageSource requested = source;
+        int rows = Math.min(MAX_REFRESH_ROWS, Math.max(pageSize, table.getItems().size()));
+        inFlight = FxAsync.onFx(source.fetch(null, rows), page -> {
+            if (source != requested) return;
+            inFlight = null;
+            table.getItems().setAll(page.songs());
+            next = page.next();
+            exhausted = !page.hasMore();
+        }, error -> {
+            if (source != requested) return;
+            inFlight = null;
+            System.err.println("❌ Failed to refresh page: " + error.getMessage());
+        });
+    }
+
+    private void cancelInFlight() {
+        if (inFlight != null) {
+            inFlight.cancel(true);
+            inFlight = null;
+        }
+    }
+}
@@ -1,6 +1,16 @@
 package gui;
 
+import backend.CoPlayIndex;
+import backend.FuzzyIndex;
+import backend.LibraryScanner;
+import backend.LibraryWatcher;
+import backend.LoudnessAnalyzer;
+import backend.PlaybackEngine;
+import backend.SessionStore;
+import backend.WaveformCache;
+import database.AsyncDb;
 import database.DbManager;
+import database.PlayHistory;
 import javafx.application.Application;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
@@ -9,10 +19,35 @@ import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
 import javafx.stage.Screen;
 
+import java.io.IOException;
+
 public class Main extends Application {
+
+    private volatile LibraryWatcher libraryWatcher;
+
     @Override
     public void start(Stage primaryStage) {
-        DbManager.createSchemaIfNeeded();
+        // Read before anything touches the database, so the last session resumes without waiting on it
+        SessionStore.Session session = SessionStore.INSTANCE.load();
+
+        // Schema work runs in the background; database calls queue behind it
+        AsyncDb.initializeSchema();
+        AsyncDb.supply(() -> {
+            FuzzyIndex.CATALOG.load();
+            CoPlayIndex.CATALOG.load();
+            // A missing or unreadable music folder only costs the live updates, not the tasks after it
+            try {
+                libraryWatcher = LibraryWatcher.start(LibraryScanner.DEFAULT_ROOT);
+            } catch (IOException e) {
+                System.err.println("⚠️ Not watching " + LibraryScanner.DEFAULT_ROOT + " for changes: " + e.getMessage());
+            }
+            WaveformCache.INSTANCE.generateCatalog();
+            LoudnessAnalyzer.start(LibraryScanner.DEFAULT_ROOT);
+            return null;
+        }).exceptionally(error -> {
+            System.err.println("❌ Startup task failed: " + error.getMessage());
+            return null;
+        });
 
         primaryStage.setTitle("MAD Music Player - Select Role");
 
@@ -34,6 +69,8 @@ public class Main extends Application {
         primaryStage.setMaximized(true); 
         primaryStage.setScene(scene);
         primaryStage.show();
+
+        if (session != null) PlayerControls.resume(session, primaryStage);
     }
 
     private void saveAndStartLogin(Stage stage, String role) {
@@ -52,6 +89,18 @@ public class Main extends Application {
         stage.setHeight(height);
     }
 
+    @Override
+    public void stop() {
+        if (libraryWatcher != null) libraryWatcher.close();
+        PlaybackEngine.INSTANCE.stop();
+        SessionStore.INSTANCE.close();
+        System.out.println("📊 Playback: " + PlaybackEngine.INSTANCE.stats());
+        System.out.println("📊 " + PlaybackEngine.INSTANCE.switchLatency());
+        AsyncDb.shutdown();
+        PlayHistory.shutdown();
+        DbManager.shutdown();
+    }
+
     public static void main(String[] args) {
         launch(args);
     }
@@ -1,156 +1,143 @@
 package gui;
 
-import database.DbFinder;
+import backend.PlayQueue;
+import backend.PlaybackEngine;
+import backend.SessionStore;
+import backend.WaveformCache;
+import database.Song;
 import javafx.application.Platform;
+import javafx.beans.value.ChangeListener;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
-import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
-import javafx.scene.media.Media;
 import javafx.scene.media.MediaPlayer;
-import javafx.stage.Modality;
 import javafx.stage.Stage;
 import javafx.util.Duration;
 
-import java.io.File;
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 
+/**
+ * The player window. There is only one; it is built on first use, hidden when closed and shown
+ * again for the next playlist. Its controls follow whatever {@link PlaybackEngine} is playing,
+ * moving their listeners from the old MediaPlayer to the new one on every track. The seek bar
+ * shows the track's waveform from {@link WaveformCache}: stored peaks appear at once, others as
+ * soon as they are decoded, and the player never waits for them.
+ */
 public class PlayerControls {
-    private static MediaPlayer currentPlayer;
-    private static int currentIndex;
-    private static List<Integer> songIds;
 
-    // 🔊 Store current volume globally
-    private static double currentVolume = 0.7;
+    private static final PlaybackEngine engine = PlaybackEngine.INSTANCE;
+
+    private static Stage window;
+    private static Label title;
+    private static Button playPauseBtn;
+    private static WaveformSeekBar seekBar;
+
+    private static final ChangeListener<Duration> timeListener = (obs, oldTime, newTime) ->
+            seekBar.setPosition(newTime.toSeconds());
+    private static final ChangeListener<Duration> durationListener = (obs, oldDuration, newDuration) ->
+            seekBar.setDuration(newDuration == null || newDuration.isUnknown() ? 0 : newDuration.toSeconds());
+    private static final ChangeListener<MediaPlayer.Status> statusListener = (obs, oldStatus, newStatus) ->
+            playPauseBtn.setText(newStatus == MediaPlayer.Status.PLAYING ? "⏸ Pause" : "▶️ Play");
 
     public static void playPlaylist(List<Integer> ids, int startIndex, boolean shuffle, Stage parentStage) {
+        playPlaylist(ids, startIndex, shuffle, false, parentStage);
+    }
+
+    // In radio mode the playlist plays once from startIndex and then keeps going with similar songs
+    public static void playPlaylist(List<Integer> ids, int startIndex, boolean shuffle, boolean radio, Stage parentStage) {
         if (ids == null || ids.isEmpty()) return;
+        if (radio) play(PlayQueue.radio(ids, startIndex), parentStage);
+        else play(shuffle ? PlayQueue.shuffled(ids, startIndex) : PlayQueue.inOrder(ids, startIndex), parentStage);
+    }
 
-        songIds = new ArrayList<>(ids);
-        if (shuffle) Collections.shuffle(songIds);
+    public static void playSong(int songId, Stage parentStage) {
+        play(PlayQueue.single(songId), parentStage);
+    }
 
-        currentIndex = startIndex >= 0 && startIndex < songIds.size() ? startIndex : 0;
+    // Open the player on a session saved by the last run, paused where it was left
+    public static void resume(SessionStore.Session session, Stage parentStage) {
+        if (window == null) engine.volumeProperty().set(session.volume());
+        show(parentStage);
+        engine.resume(session);
+    }
 
-        playCurrent(parentStage);
+    public static void play(PlayQueue queue, Stage parentStage) {
+        show(parentStage);
+        engine.play(queue);
     }
 
-    private static void playCurrent(Stage parentStage) {
-        if (songIds.isEmpty()) return;
+    private static void show(Stage parentStage) {
+        if (window == null) build(parentStage);
+        window.show();
+        window.toFront();
+    }
 
-        int songId = songIds.get(currentIndex);
-        Map<String, String> songData = DbFinder.searchSong(songId);
+    private static void build(Stage parentStage) {
+        window = new Stage();
+        window.initOwner(parentStage);
+        window.setTitle("🎵 Playlist Player");
 
-        if (songData == null) {
-            next(parentStage);
-            return;
-        }
+        title = new Label();
+        title.setStyle("-fx-font-size: 16px; -fx-font-weight: bold;");
 
-        File audioFile = new File(songData.get("file_name"));
-        if (!audioFile.exists()) {
-            next(parentStage);
-            return;
-        }
+        playPauseBtn = new Button("⏸ Pause");
+        Button nextBtn = new Button("⏭ Next");
+        Button prevBtn = new Button("⏮ Prev");
 
-        Media media = new Media(audioFile.toURI().toString());
-        if (currentPlayer != null) currentPlayer.stop();
-        currentPlayer = new MediaPlayer(media);
-
-        Platform.runLater(() -> {
-            Stage popup = new Stage();
-            popup.initModality(Modality.APPLICATION_MODAL);
-            popup.initOwner(parentStage);
-            popup.setTitle("🎵 Playlist Player");
-
-            Label title = new Label("🎧 " + songData.get("Title") + " — " + songData.get("Artist"));
-            title.setStyle("-fx-font-size: 16px; -fx-font-weight: bold;");
-
-            Button playPauseBtn = new Button("⏸ Pause");
-            Button nextBtn = new Button("⏭ Next");
-            Button prevBtn = new Button("⏮ Prev");
-
-            Slider seekBar = new Slider();
-            Slider volumeSlider = new Slider(0, 1, currentVolume); // 🔊 Use currentVolume
-
-            currentPlayer.setVolume(currentVolume); // 🔊 Apply retained volume
-
-            currentPlayer.setOnReady(() -> seekBar.setMax(currentPlayer.getTotalDuration().toSeconds()));
-
-            currentPlayer.currentTimeProperty().addListener((obs, oldTime, newTime) -> {
-                if (!seekBar.isValueChanging()) {
-                    seekBar.setValue(newTime.toSeconds());
-                }
-            });
-
-            seekBar.valueChangingProperty().addListener((obs, wasChanging, isChanging) -> {
-                if (!isChanging) {
-                    currentPlayer.seek(Duration.seconds(seekBar.getValue()));
-                }
-            });
-
-            seekBar.addEventFilter(MouseEvent.MOUSE_PRESSED, e -> {
-                double percent = e.getX() / seekBar.getWidth();
-                Duration seekTo = currentPlayer.getTotalDuration().multiply(percent);
-                currentPlayer.seek(seekTo);
-            });
-
-            volumeSlider.valueProperty().addListener((obs, oldVal, newVal) -> {
-                currentVolume = newVal.doubleValue(); // 🔄 Save new volume
-                currentPlayer.setVolume(currentVolume);
-            });
-
-            playPauseBtn.setOnAction(e -> {
-                if (currentPlayer.getStatus() == MediaPlayer.Status.PLAYING) {
-                    currentPlayer.pause();
-                    playPauseBtn.setText("▶️ Play");
-                } else {
-                    currentPlayer.play();
-                    playPauseBtn.setText("⏸ Pause");
-                }
-            });
-
-            nextBtn.setOnAction(e -> {
-                popup.close();
-                next(parentStage);
-            });
-
-            prevBtn.setOnAction(e -> {
-                popup.close();
-                previous(parentStage);
-            });
-
-            popup.setOnCloseRequest(e -> {
-                if (currentPlayer != null) currentPlayer.stop();
-            });
-
-            HBox controls = new HBox(10, prevBtn, playPauseBtn, nextBtn);
-            controls.setAlignment(Pos.CENTER);
-
-            VBox layout = new VBox(12, title,
-                    new Label("Seek:"), seekBar,
-                    new Label("Volume:"), volumeSlider,
-                    controls);
-            layout.setStyle("-fx-padding: 20;");
-            layout.setAlignment(Pos.CENTER);
-
-            popup.setScene(new Scene(layout, 460, 300));
-            popup.show();
-
-            currentPlayer.play();
-        });
+        seekBar = new WaveformSeekBar(seconds -> engine.seek(Duration.seconds(seconds)));
+        Slider volumeSlider = new Slider(0, 1, engine.volumeProperty().get());
+        engine.volumeProperty().bind(volumeSlider.valueProperty()); // 🔊 Retained across tracks
+
+        playPauseBtn.setOnAction(e -> engine.togglePause());
+        nextBtn.setOnAction(e -> engine.next());
+        prevBtn.setOnAction(e -> engine.previous());
+
+        engine.currentSongProperty().addListener((obs, oldSong, song) -> showSong(song));
+        engine.playerProperty().addListener((obs, oldPlayer, newPlayer) -> rebind(oldPlayer, newPlayer));
+
+        // Closing ends the session; the window itself is kept for the next one
+        window.setOnHidden(e -> engine.stop());
+
+        HBox controls = new HBox(10, prevBtn, playPauseBtn, nextBtn);
+        controls.setAlignment(Pos.CENTER);
+
+        VBox layout = new VBox(12, title,
+                new Label("Seek:"), seekBar,
+                new Label("Volume:"), volumeSlider,
+                controls);
+        layout.setStyle("-fx-padding: 20;");
+        layout.setAlignment(Pos.CENTER);
+
+        window.setScene(new Scene(layout, 560, 340));
     }
 
-    private static void next(Stage stage) {
-        currentIndex = (currentIndex + 1) % songIds.size();
-        playCurrent(stage);
+    private static void showSong(Song song) {
+        title.setText(song == null ? "" : "🎧 " + song.title() + " — " + song.artist());
+        seekBar.setWaveform(null);
+        if (song == null) return;
+
+        WaveformCache.INSTANCE.request(song).thenAccept(waveform -> Platform.runLater(() -> {
+            if (song.equals(engine.currentSongProperty().get())) seekBar.setWaveform(waveform);
+        }));
     }
 
-    private static void previous(Stage stage) {
-        currentIndex = (currentIndex - 1 + songIds.size()) % songIds.size();
-        playCurrent(stage);
+    // Move the controls' listeners to the new player so the old one can be disposed cleanly
+    private static void rebind(MediaPlayer oldPlayer, MediaPlayer newPlayer) {
+        if (oldPlayer != null) {
+            oldPlayer.currentTimeProperty().removeListener(timeListener);
+            oldPlayer.totalDurationProperty().removeListener(durationListener);
+            oldPlayer.statusProperty().removeListener(statusListener);
+        }
+
+        seekBar.setPosition(0);
+        if (newPlayer == null) return;
+
+        newPlayer.currentTimeProperty().addListener(timeListener);
+        newPlayer.totalDurationProperty().addListener(durationListener);
+        newPlayer.statusProperty().addListener(statusListener);
+        durationListener.changed(null, null, newPlayer.getTotalDuration());
+        statusListener.changed(null, null, newPlayer.getStatus());
     }
-}
\ No newline at end of file
+}
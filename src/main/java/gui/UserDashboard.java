@@ -1,8 +1,13 @@
 package gui;
 
-import backend.SongManager;
-import database.DbFinder;
-
+import backend.PlayQueue;
+import backend.SearchPipeline;
+import database.AsyncDb;
+import database.PageKey;
+import database.PlayHistory.SongPlays;
+import database.Song;
+
+import javafx.application.Platform;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
@@ -12,10 +17,14 @@ import javafx.stage.Stage;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 
 public class UserDashboard {
 
+    private static final int PAGE_SIZE = 100;
+    private static final long SEARCH_DEBOUNCE_MS = 150;
+    private static final int MOST_PLAYED_LIMIT = 50;
+    private static final String RADIO_LABEL = "📻 Radio: keep playing similar songs after the list";
+
     public void start(Stage stage) {
         double width = stage.getWidth();
         double height = stage.getHeight();
@@ -26,30 +35,34 @@ public class UserDashboard {
         welcomeLabel.setStyle("-fx-font-size: 18px; -fx-font-weight: bold;");
 
         Button quickPlayBtn = new Button("🎲 Quick Play");
+        Button smartShuffleBtn = new Button("⭐ Smart Shuffle");
+        Button radioBtn = new Button("📻 Radio");
         Button exploreBtn = new Button("🌐 Explore");
         Button searchBtn = new Button("🔍 Search");
+        Button mostPlayedBtn = new Button("🔥 Most Played This Week");
         Button backBtn = new Button("🔙 Back to Login");
 
         quickPlayBtn.setOnAction(e -> {
             System.out.println("🎲 Quick Play clicked");
-            List<Integer> allSongIds = DbFinder.getAllSongs();
-            System.out.println("Found song IDs: " + allSongIds);
-        
-            if (allSongIds == null || allSongIds.isEmpty()) {
-                showMessage("Oops", "No songs available to play!");
-                return;
-            }
-        
-            int randomIndex = (int) (Math.random() * allSongIds.size());
-            System.out.println("Random index: " + randomIndex);
-            PlayerControls.playPlaylist(allSongIds, randomIndex, true, stage);
+            playCatalog(PlayQueue.randomCatalog(), stage);
+        });
+
+        smartShuffleBtn.setOnAction(e -> {
+            System.out.println("⭐ Smart Shuffle clicked");
+            playCatalog(PlayQueue.weightedCatalog(), stage);
+        });
+
+        radioBtn.setOnAction(e -> {
+            System.out.println("📻 Radio clicked");
+            playCatalog(PlayQueue.radio(List.of(), 0), stage);
         });
 
         exploreBtn.setOnAction(e -> showExploreScene(stage));
         searchBtn.setOnAction(e -> showSearchScene(stage));
+        mostPlayedBtn.setOnAction(e -> showMostPlayedScene(stage));
         backBtn.setOnAction(e -> new LoginScreen("user").start(stage));
 
-        VBox layout = new VBox(20, welcomeLabel, quickPlayBtn, exploreBtn, searchBtn, backBtn);
+        VBox layout = new VBox(20, welcomeLabel, quickPlayBtn, smartShuffleBtn, radioBtn, exploreBtn, searchBtn, mostPlayedBtn, backBtn);
         layout.setAlignment(Pos.CENTER);
 
         Scene scene = new Scene(layout, width, height);
@@ -60,6 +73,17 @@ public class UserDashboard {
         stage.show();
     }
 
+    // Draw the first track before opening the player, so an empty catalog is reported here
+    private void playCatalog(PlayQueue queue, Stage stage) {
+        FxAsync.onFx(AsyncDb.supply(queue::current), firstId -> {
+            if (firstId == null) {
+                showMessage("Oops", "No songs available to play!");
+                return;
+            }
+            PlayerControls.play(queue, stage);
+        });
+    }
+
     private void showExploreScene(Stage stage) {
         double width = stage.getWidth();
         double height = stage.getHeight();
@@ -74,9 +98,9 @@ public class UserDashboard {
         Button genreBtn = new Button("Genres");
         Button backBtn = new Button("🔙 Back");
 
-        langBtn.setOnAction(e -> showSubcategories(stage, "Language", DbFinder.getAllLanguages()));
-        artistBtn.setOnAction(e -> showSubcategories(stage, "Artist", DbFinder.getAllArtists()));
-        genreBtn.setOnAction(e -> showSubcategories(stage, "Genre", DbFinder.getAllGenres()));
+        langBtn.setOnAction(e -> openSubcategories(stage, "Language"));
+        artistBtn.setOnAction(e -> openSubcategories(stage, "Artist"));
+        genreBtn.setOnAction(e -> openSubcategories(stage, "Genre"));
 
         backBtn.setOnAction(e -> start(stage));
 
@@ -89,6 +113,10 @@ public class UserDashboard {
         stage.setY(y);
     }
 
+    private void openSubcategories(Stage stage, String categoryType) {
+        FxAsync.onFx(AsyncDb.getCategoryValues(categoryType), values -> showSubcategories(stage, categoryType, values));
+    }
+
     private void showSubcategories(Stage stage, String categoryType, List<String> subcategories) {
         VBox content = new VBox(10);
         content.setAlignment(Pos.CENTER);
@@ -115,36 +143,22 @@ public class UserDashboard {
     }
 
     private void showSongsByCategory(Stage stage, String categoryType, String value) {
-        List<Integer> originalIds = SongManager.getSongsByCategory(categoryType, value);
         VBox layout = new VBox(10);
         layout.setAlignment(Pos.CENTER);
 
-        TableView<Map<String, String>> table = new TableView<>();
+        TableView<Song> table = new TableView<>();
         table.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY);
+        CheckBox radioBox = new CheckBox(RADIO_LABEL);
 
-        TableColumn<Map<String, String>, String> titleCol = new TableColumn<>("Title");
-        TableColumn<Map<String, String>, String> artistCol = new TableColumn<>("Artist");
-        TableColumn<Map<String, String>, Void> playCol = new TableColumn<>("▶ Start from here");
-
-        titleCol.setCellValueFactory(data -> new SimpleStringProperty(data.getValue().get("Title")));
-        artistCol.setCellValueFactory(data -> new SimpleStringProperty(data.getValue().get("Artist")));
+        TableColumn<Song, String> titleCol = new TableColumn<>("Title");
+        TableColumn<Song, String> artistCol = new TableColumn<>("Artist");
+        TableColumn<Song, Void> playCol = new TableColumn<>("▶ Start from here");
 
-        List<Map<String, String>> songs = new ArrayList<>();
-        List<Integer> sortedIds = new ArrayList<>();
+        titleCol.setCellValueFactory(data -> new SimpleStringProperty(data.getValue().title()));
+        artistCol.setCellValueFactory(data -> new SimpleStringProperty(data.getValue().artist()));
 
-        for (int id : originalIds) {
-            Map<String, String> song = DbFinder.searchSong(id);
-            if (song != null) {
-                song.put("ID", String.valueOf(id));
-                songs.add(song);
-            }
-        }
-
-        songs.sort((a, b) -> a.get("Title").compareToIgnoreCase(b.get("Title")));
-        songs.forEach(song -> {
-            table.getItems().add(song);
-            sortedIds.add(Integer.parseInt(song.get("ID")));
-        });
+        LazySongLoader loader = new LazySongLoader(table, PAGE_SIZE);
+        loader.load((after, limit) -> AsyncDb.findSongsByCategoryPage(categoryType, value, after, limit));
 
         playCol.setCellFactory(tc -> new TableCell<>() {
             private final Button playBtn = new Button("▶");
@@ -152,7 +166,20 @@ public class UserDashboard {
             {
                 playBtn.setOnAction(e -> {
                     int index = getIndex();
-                    PlayerControls.playPlaylist(sortedIds, index, false, stage);
+                    boolean radio = radioBox.isSelected();
+                    List<Integer> sortedIds = getTableView().getItems().stream().map(Song::id).toList();
+                    PageKey rest = loader.remaining();
+                    if (rest == null) {
+                        PlayerControls.playPlaylist(sortedIds, index, false, radio, stage);
+                        return;
+                    }
+
+                    // The queue runs to the end of the category, not just the pages scrolled past
+                    FxAsync.onFx(AsyncDb.findSongIdsByCategoryAfter(categoryType, value, rest), more -> {
+                        List<Integer> allIds = new ArrayList<>(sortedIds);
+                        allIds.addAll(more);
+                        PlayerControls.playPlaylist(allIds, index, false, radio, stage);
+                    });
                 });
             }
 
@@ -166,14 +193,9 @@ public class UserDashboard {
     table.getColumns().addAll(titleCol, artistCol, playCol);
 
     Button backBtn = new Button("🔙 Back");
-    backBtn.setOnAction(e -> showSubcategories(stage, categoryType, switch (categoryType) {
-        case "Language" -> DbFinder.getAllLanguages();
-        case "Artist" -> DbFinder.getAllArtists();
-        case "Genre" -> DbFinder.getAllGenres();
-        default -> List.of();
-    }));
+    backBtn.setOnAction(e -> openSubcategories(stage, categoryType));
 
-    layout.getChildren().addAll(new Label("🎼 Songs in " + value + ":"), table, backBtn);
+    layout.getChildren().addAll(new Label("🎼 Songs in " + value + ":"), table, radioBox, backBtn);
 
     ScrollPane scrollPane = new ScrollPane(layout);
     scrollPane.setFitToWidth(true);
@@ -191,25 +213,24 @@ public class UserDashboard {
         TextField searchField = new TextField();
         searchField.setPromptText("Type song title...");
 
-        TableView<Map<String, String>> table = new TableView<>();
+        TableView<Song> table = new TableView<>();
         table.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY);
 
-        TableColumn<Map<String, String>, String> titleCol = new TableColumn<>("Title");
-        TableColumn<Map<String, String>, String> artistCol = new TableColumn<>("Artist");
-        TableColumn<Map<String, String>, Void> playCol = new TableColumn<>("▶");
+        TableColumn<Song, String> titleCol = new TableColumn<>("Title");
+        TableColumn<Song, String> artistCol = new TableColumn<>("Artist");
+        TableColumn<Song, Void> playCol = new TableColumn<>("▶");
 
-        titleCol.setCellValueFactory(data -> new SimpleStringProperty(data.getValue().get("Title")));
-        artistCol.setCellValueFactory(data -> new SimpleStringProperty(data.getValue().get("Artist")));
+        titleCol.setCellValueFactory(data -> new SimpleStringProperty(data.getValue().title()));
+        artistCol.setCellValueFactory(data -> new SimpleStringProperty(data.getValue().artist()));
 
         playCol.setCellFactory(tc -> new TableCell<>() {
             private final Button btn = new Button("Play");
 
             {
                 btn.setOnAction(e -> {
-                    Map<String, String> songData = getTableView().getItems().get(getIndex());
+                    Song song = getTableView().getItems().get(getIndex());
                     try {
-                        int songId = Integer.parseInt(songData.get("ID"));
-                        backend.AudioPlayer.playSong(songId, stage);
+                        PlayerControls.playSong(song.id(), stage);
                     } catch (Exception ex) {
                         showMessage("Error", "❌ Unable to play this song.");
                     }
@@ -225,15 +246,18 @@ public class UserDashboard {
 
         table.getColumns().addAll(titleCol, artistCol, playCol);
 
-        searchField.textProperty().addListener((obs, oldText, newText) -> {
-            table.getItems().clear();
-            if (newText.isBlank()) return;
-            List<Map<String, String>> results = DbFinder.searchSongsByTitleLike(newText);
-            table.getItems().addAll(results);
-        });
+        LazySongLoader loader = new LazySongLoader(table, PAGE_SIZE);
+        SearchPipeline pipeline = new SearchPipeline(PAGE_SIZE, SEARCH_DEBOUNCE_MS, Platform::runLater,
+                result -> loader.show(result.page(),
+                        (after, limit) -> AsyncDb.searchSongsPage(result.query(), after, limit)));
+
+        searchField.textProperty().addListener((obs, oldText, newText) -> pipeline.submit(newText));
 
         Button backBtn = new Button("🔙 Back");
-        backBtn.setOnAction(e -> start(stage));
+        backBtn.setOnAction(e -> {
+            pipeline.close();
+            start(stage);
+        });
 
         VBox searchLayout = new VBox(15, new Label("🔎 Search Song Titles:"), searchField, table, backBtn);
         searchLayout.setAlignment(Pos.CENTER);
@@ -242,6 +266,53 @@ public class UserDashboard {
         stage.setScene(new Scene(searchLayout, width, height));
     }
 
+    private void showMostPlayedScene(Stage stage) {
+        double width = stage.getWidth();
+        double height = stage.getHeight();
+
+        TableView<SongPlays> table = new TableView<>();
+        table.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY_FLEX_LAST_COLUMN);
+        table.setPlaceholder(new Label("Nothing played this week yet."));
+        CheckBox radioBox = new CheckBox(RADIO_LABEL);
+
+        TableColumn<SongPlays, String> titleCol = new TableColumn<>("Title");
+        TableColumn<SongPlays, String> artistCol = new TableColumn<>("Artist");
+        TableColumn<SongPlays, String> playsCol = new TableColumn<>("Plays");
+        TableColumn<SongPlays, Void> playCol = new TableColumn<>("▶ Start from here");
+
+        titleCol.setCellValueFactory(data -> new SimpleStringProperty(data.getValue().song().title()));
+        artistCol.setCellValueFactory(data -> new SimpleStringProperty(data.getValue().song().artist()));
+        playsCol.setCellValueFactory(data -> new SimpleStringProperty(String.valueOf(data.getValue().plays())));
+
+        playCol.setCellFactory(tc -> new TableCell<>() {
+            private final Button playBtn = new Button("▶");
+
+            {
+                playBtn.setOnAction(e -> {
+                    List<Integer> ids = getTableView().getItems().stream().map(item -> item.song().id()).toList();
+                    PlayerControls.playPlaylist(ids, getIndex(), false, radioBox.isSelected(), stage);
+                });
+            }
+
+            @Override
+            protected void updateItem(Void item, boolean empty) {
+                super.updateItem(item, empty);
+                setGraphic(empty ? null : playBtn);
+            }
+        });
+
+        table.getColumns().addAll(List.of(titleCol, artistCol, playsCol, playCol));
+        FxAsync.onFx(AsyncDb.mostPlayedThisWeek(MOST_PLAYED_LIMIT), table.getItems()::setAll);
+
+        Button backBtn = new Button("🔙 Back");
+        backBtn.setOnAction(e -> start(stage));
+
+        VBox layout = new VBox(15, new Label("🔥 Most Played This Week:"), table, radioBox, backBtn);
+        layout.setAlignment(Pos.CENTER);
+
+        stage.setScene(new Scene(layout, width, height));
+    }
+
     private void showMessage(String title, String message) {
         Alert alert = new Alert(Alert.AlertType.INFORMATION);
         alert.setTitle(title);
@@ -0,0 +1,112 @@
+package gui;
+
+import backend.Waveform;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.layout.Region;
+import javafx.scene.paint.Color;
+
+import java.util.function.DoubleConsumer;
+
+/**
+ * Seek control drawn on a Canvas: the track's waveform with the part already played in the
+ * accent color. Clicking seeks; dragging moves the playhead and seeks on release. Until the peaks
+ * of a track are known it shows a plain bar.
+ */
+public class WaveformSeekBar extends Region {
+
+    private static final Color PLAYED = Color.web("#1e88e5");
+    private static final Color UNPLAYED = Color.web("#b0bec5");
+    private static final double FLAT_BAR_HEIGHT = 4;
+
+    private final Canvas canvas = new Canvas();
+    private final DoubleConsumer onSeek;
+
+    private Waveform waveform;
+    private double durationSeconds;
+    private double positionSeconds;
+    private boolean dragging;
+
+    public WaveformSeekBar(DoubleConsumer onSeek) {
+        this.onSeek = onSeek;
+        getChildren().add(canvas);
+        setPrefHeight(64);
+        setMinHeight(32);
+
+        canvas.setOnMousePressed(this::drag);
+        canvas.setOnMouseDragged(this::drag);
+        canvas.setOnMouseReleased(e -> {
+            if (!dragging) return;
+            dragging = false;
+            onSeek.accept(positionSeconds);
+        });
+    }
+
+    public void setWaveform(Waveform waveform) {
+        this.waveform = waveform;
+        redraw();
+    }
+
+    public void setDuration(double seconds) {
+        durationSeconds = seconds;
+        redraw();
+    }
+
+    // Ignored while the user is dragging the playhead
+    public void setPosition(double seconds) {
+        if (dragging) return;
+        positionSeconds = seconds;
+        redraw();
+    }
+
+    @Override
+    protected void layoutChildren() {
+        canvas.setWidth(getWidth());
+        canvas.setHeight(getHeight());
+        redraw();
+    }
+
+    private void drag(MouseEvent e) {
+        if (durationSeconds <= 0 || getWidth() <= 0) return;
+        dragging = true;
+        positionSeconds = Math.max(0, Math.min(1, e.getX() / getWidth())) * durationSeconds;
+        redraw();
+    }
+
+    private void redraw() {
+        double width = canvas.getWidth();
+        double height = canvas.getHeight();
+        GraphicsContext g = canvas.getGraphicsContext2D();
+        g.clearRect(0, 0, width, height);
+        if (width <= 0 || height <= 0) return;
+
+        double playedX = durationSeconds > 0 ? width * positionSeconds / durationSeconds : 0;
+        double middle = height / 2;
+
+        if (waveform == null || waveform.columns() == 0) {
+            g.setFill(UNPLAYED);
+            g.fillRect(0, middle - FLAT_BAR_HEIGHT / 2, width, FLAT_BAR_HEIGHT);
+            g.setFill(PLAYED);
+            g.fillRect(0, middle - FLAT_BAR_HEIGHT / 2, playedX, FLAT_BAR_HEIGHT);
+            return;
+        }
+
+        // One line per pixel, spanning the extremes of the columns that fall into it
+        int columns = waveform.columns();
+        double scale = middle / 128;
+        g.setLineWidth(1);
+        for (int x = 0; x < (int) width; x++) {
+            int from = (int) ((long) x * columns / (int) width);
+            int to = Math.max(from + 1, (int) ((long) (x + 1) * columns / (int) width));
+            int min = 0;
+            int max = 0;
+            for (int c = from; c < to && c < columns; c++) {
+                min = Math.min(min, waveform.min(c));
+                max = Math.max(max, waveform.max(c));
+            }
+            g.setStroke(x < playedX ? PLAYED : UNPLAYED);
+            g.strokeLine(x + 0.5, middle - Math.max(1, max * scale), x + 0.5, middle - Math.min(-1, min * scale));
+        }
+    }
+}